@@ -1,9 +1,11 @@
 import ida.sentences.SentenceFinder;
 import ida.sentences.SentenceSetup;
+import ida.sentences.storage.OutputSink;
 
 public class Main {
     public static void main(String[] args) {
         SentenceSetup setup = SentenceSetup.createFromCmd();
+        OutputSink.install(setup);
 
         String version = "1.5.11";
         String fastWFOMCVersion = "0.1";
@@ -16,7 +18,13 @@ public class Main {
 
 
         SentenceFinder finder = new SentenceFinder(setup);
-        if (setup.continueWithSearch()) {
+        if (setup.workerId >= 0) {
+            finder.runAsWorker();
+        } else if (setup.workers > 0) {
+            finder.coordinate();
+        } else if (setup.continueFromCheckpoint()) {
+            finder.loadCheckpointAndContinueSearch();
+        } else if (setup.continueWithSearch()) {
             finder.loadAndContinueSearch();
         } else if (!setup.seed.isBlank()) {
             finder.startFromSeed(setup.seed);
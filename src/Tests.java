@@ -1,10 +1,12 @@
 import ida.cellGraphs.CanonicalFilter;
+import ida.hypergraphIsomorphism.ConcurrentIsoHandler;
 import ida.ilp.logic.Clause;
 import ida.ilp.logic.Literal;
 import ida.ilp.logic.Predicate;
 import ida.ilp.logic.Variable;
 import ida.ilp.logic.quantifiers.Quantifier;
 import ida.ilp.logic.quantifiers.QuantifiersGenerator;
+import ida.ilp.logic.special.IsoClauseWrapper;
 import ida.ilp.logic.subsumption.Matching;
 import ida.sentences.SentenceSetup;
 import ida.sentences.SentenceState;
@@ -22,6 +24,7 @@ import ida.utils.tuples.Triple;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 public class Tests {
@@ -56,6 +59,7 @@ public class Tests {
         isoVariablesPredicatesSigns();
         isoVariablesPredicatesSignsDirection();
         ultraCannonic();
+        isoHandlerConcurrency();
 
 
         //cannonicCellGraph();
@@ -203,6 +207,48 @@ public class Tests {
     }
 
 
+    // isomorphic sentences inserted at once by many threads into one handler; exactly one of them has to be kept
+    private static void isoHandlerConcurrency() {
+        LiteralsGenerator.generate(variables, Sugar.list(Predicate.create("U0", 1), Predicate.create("U1", 1),
+                Predicate.create("B0", 2), Predicate.create("B1", 2)));
+        SentenceSetup setup = new SentenceSetup(variables.size()).setIso(true, true, false);
+        List<String> isomorphic = Sugar.list("(V x E y B0(x, y))", "(V x E y ~B0(x, y))", "(V x E y B1(x, y))", "(V x E y ~B1(x, y))");
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        int duplicates = 0;
+        try {
+            for (int trial = 0; trial < 2000; trial++) {
+                ConcurrentIsoHandler handler = new ConcurrentIsoHandler();
+                LiteralsCache cache = LiteralsCache.getLayer();
+                CyclicBarrier start = new CyclicBarrier(threads);
+                List<Future<Boolean>> kept = Sugar.list();
+                for (int thread = 0; thread < threads; thread++) {
+                    String sentence = isomorphic.get(thread % isomorphic.size());
+                    kept.add(executor.submit(() -> {
+                        IsoClauseWrapper icw = SentenceState.parse(sentence, setup).getICW(cache);
+                        start.await();
+                        return null == handler.contains(icw);
+                    }));
+                }
+                int keptCount = 0;
+                for (Future<Boolean> future : kept) {
+                    keptCount += future.get() ? 1 : 0;
+                }
+                if (1 != keptCount) {
+                    duplicates++;
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+        if (0 != duplicates) {
+            System.out.println("isomorphic sentences were kept more than once in " + duplicates + " trials");
+        }
+        assert 0 == duplicates;
+    }
+
     private static void evaluateIsoTests(SentenceSetup setup, List<Triple<String, String, Boolean>> test) {
         for (Triple<String, String, Boolean> triple : test) {
             SentenceState input = SentenceState.parse(triple.getR(), setup);
@@ -3,19 +3,19 @@ package ida.cellGraphs;
 import ida.ilp.logic.Clause;
 import ida.ilp.logic.Predicate;
 import ida.ilp.logic.Variable;
+import ida.sentences.Deadline;
 import ida.sentences.SentenceSetup;
 import ida.sentences.SentenceState;
 import ida.sentences.generators.ClausesGenerator;
+import ida.sentences.metrics.CallStats;
 import ida.sentences.generators.LiteralsGenerator;
+import ida.sentences.storage.Checkpoint;
 import ida.utils.Sugar;
 import ida.utils.collections.Counters;
 import ida.utils.collections.MultiList;
 import ida.utils.tuples.Pair;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.*;
 import java.nio.file.Files;
 import java.util.*;
 
@@ -58,6 +58,7 @@ public class CanonicalFilter implements CellGraphFilter {
             return;
         }
         List<Pair<SentenceState, String>> queue = Sugar.list();
+        long start = System.nanoTime();
         try {
             File file = File.createTempFile("sentences", ".in");
             StringBuilder sb = new StringBuilder();
@@ -72,11 +73,12 @@ public class CanonicalFilter implements CellGraphFilter {
 
 //            System.out.println("the input is in\t" + file.getAbsolutePath());
             Process process = processBuilder.start();
+            Deadline.watch(process); // cell graphs returned till then are kept, the rest stays unknown
 
             BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
             String line;
             int addedCellGraphs = 0;
-            while ((line = reader.readLine()) != null) {
+            while ((line = reader.readLine()) != null && !Deadline.expired()) { // a line may be cut by destroying the process
                 if (line.startsWith("[")) {
                     String lineWithoutBracket = line.strip();
                     lineWithoutBracket = lineWithoutBracket.substring(1, lineWithoutBracket.length() - 1);
@@ -87,7 +89,7 @@ public class CanonicalFilter implements CellGraphFilter {
                     printComment("there is an unparseable line from FastWFOMC\t" + line + " ; after parsing " + addedCellGraphs + " cell-graphs");
                 }
             }
-            if (cellGraphQueue.size() != addedCellGraphs) {
+            if (cellGraphQueue.size() != addedCellGraphs && !Deadline.expired()) {
                 System.err.println("Not every single cell-graph was returned from the query!");
                 System.err.println(processBuilder.command());
                 System.err.println(file.getAbsolutePath());
@@ -101,7 +103,9 @@ public class CanonicalFilter implements CellGraphFilter {
                 throw new IllegalStateException();
             }
             int exitCode = process.waitFor();
+            Deadline.unwatch(process);
             Files.deleteIfExists(file.toPath());
+            CallStats.JULIA.add(System.nanoTime() - start, cellGraphQueue.size());
         } catch (IOException e) {
             throw new RuntimeException(e);
         } catch (InterruptedException e) {
@@ -173,6 +177,37 @@ public class CanonicalFilter implements CellGraphFilter {
         return minimalCanonical(keys, graphs, new RenamingMapping());
     }
 
+    @Override
+    public void writeState(DataOutputStream out) throws IOException {
+        out.writeInt(cellGraphs.size());
+        for (String cellGraph : cellGraphs) {
+            Checkpoint.writeString(out, cellGraph);
+        }
+    }
+
+    @Override
+    public void readState(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        for (int idx = 0; idx < size; idx++) {
+            cellGraphs.add(Checkpoint.readString(in));
+        }
+    }
+
+    @Override
+    public boolean hasCellGraph(SentenceState sentence) {
+        return null != sentence.getCanonicalCellGraph();
+    }
+
+    @Override
+    public String cellGraphString(SentenceState sentence) {
+        return sentence.getCanonicalCellGraph();
+    }
+
+    @Override
+    public int cellGraphHash(SentenceState sentence) {
+        return sentence.getCanonicalCellGraph().hashCode();
+    }
+
     private void printComment(String message) { // TODO this is not nice!
         System.out.println("# " + message);
         System.err.println("# " + message);
@@ -4,6 +4,9 @@ import ida.ilp.logic.Clause;
 import ida.sentences.SentenceState;
 import ida.sentences.generators.ClausesGenerator;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -27,4 +30,18 @@ public interface CellGraphFilter {
     // as redundant due to some earlier level are added into the skip collection during the operation
     Collection<List<SentenceState>> add(List<SentenceState> sentences, Set<SentenceState> skip, ClausesGenerator clausesGenerator);
 
+    // binary state for checkpoints; readState expects an empty filter and the representatives stored by writeState
+    void writeState(DataOutputStream out) throws IOException;
+
+    void readState(DataInputStream in) throws IOException;
+
+    // false if fillInCellGraphs has been cut short by the deadline before getting to the sentence
+    boolean hasCellGraph(SentenceState sentence);
+
+    // the cell graph of the sentence in the form accepted by setUpRedisOutput
+    String cellGraphString(SentenceState sentence);
+
+    // the same value for isomorphic cell graphs; used to partition cell graphs among worker processes
+    int cellGraphHash(SentenceState sentence);
+
 }
@@ -4,18 +4,18 @@ import ida.hypergraphIsomorphism.VariableSupplier;
 import ida.ilp.logic.*;
 import ida.ilp.logic.special.IsoClauseWrapper;
 import ida.ilp.logic.subsumption.Matching;
+import ida.sentences.Deadline;
 import ida.sentences.SentenceSetup;
 import ida.sentences.SentenceState;
 import ida.sentences.caches.LiteralsCache;
 import ida.sentences.generators.ClausesGenerator;
+import ida.sentences.metrics.CallStats;
+import ida.sentences.storage.Checkpoint;
 import ida.utils.Sugar;
 import ida.utils.collections.MultiList;
 import ida.utils.tuples.Pair;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.*;
 import java.nio.file.Files;
 import java.util.*;
 
@@ -37,10 +37,10 @@ public class IsomorphicFilter implements CellGraphFilter {
     @Override
     public void incorporate(SentenceState sentence, String line) {
         Clause cellGraph = Clause.parse(line, ',', null);
-        IsoClauseWrapper icw = IsoClauseWrapper.create(cellGraph);
+        IsoClauseWrapper icw = setup.isoStrategy.wrap(cellGraph);
         boolean found = false;
         for (Clause clause : multilist.get(icw)) {
-            if (matching.isomorphism(clause, icw.getOriginalClause())) {
+            if (isomorphic(clause, icw)) {
                 found = true;
                 break;
             }
@@ -71,6 +71,7 @@ public class IsomorphicFilter implements CellGraphFilter {
         if (cellGraphQueue.isEmpty()) {
             return;
         }
+        long start = System.nanoTime();
         try {
             File file = File.createTempFile("sentences", ".in");
             StringBuilder sb = new StringBuilder();
@@ -85,11 +86,12 @@ public class IsomorphicFilter implements CellGraphFilter {
 
 //            System.out.println("the input is in\t" + file.getAbsolutePath());
             Process process = processBuilder.start();
+            Deadline.watch(process); // cell graphs returned till then are kept, the rest stays unknown
 
             BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
             String line;
             int addedCellGraphs = 0;
-            while ((line = reader.readLine()) != null) {
+            while ((line = reader.readLine()) != null && !Deadline.expired()) { // a line may be cut by destroying the process
                 if (line.startsWith("[")) {
                     String wholeLine = line;
                     // parsing a cell-graph
@@ -105,7 +107,7 @@ public class IsomorphicFilter implements CellGraphFilter {
                     printComment("there is an unparseable line from FastWFOMC\t" + line + " ; after parsing " + addedCellGraphs + " cell-graphs");
                 }
             }
-            if (cellGraphQueue.size() != addedCellGraphs) {
+            if (cellGraphQueue.size() != addedCellGraphs && !Deadline.expired()) {
                 System.err.println("Not every single cell-graph was returned from the query!");
                 System.err.println(processBuilder.command());
                 System.err.println(file.getAbsolutePath());
@@ -119,7 +121,9 @@ public class IsomorphicFilter implements CellGraphFilter {
                 throw new IllegalStateException();
             }
             int exitCode = process.waitFor();
+            Deadline.unwatch(process);
             Files.deleteIfExists(file.toPath());
+            CallStats.JULIA.add(System.nanoTime() - start, cellGraphQueue.size());
         } catch (IOException e) {
             throw new RuntimeException(e);
         } catch (InterruptedException e) {
@@ -131,9 +135,9 @@ public class IsomorphicFilter implements CellGraphFilter {
     public void addHiddens(Collection<SentenceState> sentences) {
         for (SentenceState sentence : sentences) {
             boolean found = false;
-            IsoClauseWrapper icw = IsoClauseWrapper.create(sentence.getCellGraph());
+            IsoClauseWrapper icw = setup.isoStrategy.wrap(sentence.getCellGraph());
             for (Clause clause : multilist.get(icw)) {
-                if (matching.isomorphism(clause, icw.getOriginalClause())) {
+                if (isomorphic(clause, icw)) {
                     found = true;
 //                if (setup.collectCellGraphs) { // this is just a dev tool
 //                    this.cellGraphs.put(clause, sentence);
@@ -160,9 +164,9 @@ public class IsomorphicFilter implements CellGraphFilter {
             }
 
             boolean found = false;
-            IsoClauseWrapper icw = IsoClauseWrapper.create(sentence.getCellGraph());
+            IsoClauseWrapper icw = setup.isoStrategy.wrap(sentence.getCellGraph());
             for (Clause clause : multilist.get(icw)) {
-                if (matching.isomorphism(clause, icw.getOriginalClause())) {
+                if (isomorphic(clause, icw)) {
 //                    storeForDebug(sentence, clause);
                     if (parents.containsKey(clause)) {
                         parents.put(clause, sentence);
@@ -195,6 +199,45 @@ public class IsomorphicFilter implements CellGraphFilter {
         return parents.values();
     }
 
+    @Override
+    public boolean hasCellGraph(SentenceState sentence) {
+        return null != sentence.getCellGraph();
+    }
+
+    @Override
+    public String cellGraphString(SentenceState sentence) {
+        return sentence.getCellGraph().toString();
+    }
+
+    @Override
+    public int cellGraphHash(SentenceState sentence) {
+        return setup.isoStrategy.wrap(sentence.getCellGraph()).hashCode();
+    }
+
+    @Override
+    public void writeState(DataOutputStream out) throws IOException {
+        List<Clause> cellGraphs = Sugar.list();
+        multilist.values().forEach(cellGraphs::addAll);
+        out.writeInt(cellGraphs.size());
+        for (Clause cellGraph : cellGraphs) {
+            Checkpoint.writeString(out, cellGraph.toString());
+        }
+    }
+
+    @Override
+    public void readState(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        for (int idx = 0; idx < size; idx++) { // these are pairwise non-isomorphic already, so no matching is needed
+            IsoClauseWrapper icw = setup.isoStrategy.wrap(Clause.parse(Checkpoint.readString(in), ',', null));
+            multilist.put(icw, icw.getOriginalClause());
+        }
+    }
+
+    // a member of the bucket of the wrapper; exact wrappers are equal only if isomorphic
+    private boolean isomorphic(Clause member, IsoClauseWrapper icw) {
+        return icw.isExact() || matching.isomorphism(member, icw.getOriginalClause());
+    }
+
     private void printComment(String message) { // TODO shift this somewhere else, make it nicer!
         System.out.println("# " + message);
         System.err.println("# " + message);
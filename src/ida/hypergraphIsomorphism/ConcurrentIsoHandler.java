@@ -8,40 +8,58 @@ import ida.sentences.SentenceState;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
-// it is not nice that this is mostly a copy of multilist
+// Buckets of mutually non-isomorphic clauses by their (isomorphism-invariant) wrappers. There is no global lock: a new
+// bucket is created atomically by the map, which locks just the bin of the wrapper, and an existing bucket is locked
+// only to take a snapshot of its members or to append to it. The isomorphism checks themselves run outside of any lock,
+// each thread with its own Matching; a clause is appended only if no member has been added since its last snapshot,
+// otherwise the newcomers are checked as well. So the pruning scales with threads unless they all hit the same bucket.
+// Exact wrappers (canonical forms) need no checks at all, the only member of a bucket is the witness.
 public class ConcurrentIsoHandler {
 
+    private static final ThreadLocal<Matching> matchings = ThreadLocal.withInitial(Matching::new);
+
     private final ConcurrentHashMap<IsoClauseWrapper, List<Clause>> map = new ConcurrentHashMap<>();
 
     public ConcurrentIsoHandler() {
     }
 
-    // public boolean contains(IsoClauseWrapper icw) {
     // returns null if there is no witness for this :)) otherwise, it returns the witness
     public SentenceState contains(IsoClauseWrapper icw) {
-        List<Clause> result;
-        synchronized (map) {
-            result = map.get(icw);
-            if (null == result) {
-                result = Collections.synchronizedList(new ArrayList<>());
-                result.add(icw.getOriginalClause());
-                map.put(icw, result);
-                return null;
-            }
+        Clause clause = icw.getOriginalClause();
+        boolean[] created = {false};
+        List<Clause> bucket = map.computeIfAbsent(icw, key -> {
+            created[0] = true;
+            List<Clause> members = new ArrayList<>(1);
+            members.add(clause);
+            return members;
+        });
+        if (created[0]) {
+            return null;
+        }
+        if (icw.isExact()) { // the bucket holds the first of its isomorphism class only
+            return bucket.get(0).getSentence();
         }
-        synchronized (result) {
-            Matching m = new Matching();
-            for (Clause clause : result) {
-                if (m.isomorphism(clause, icw.getOriginalClause())) {
-                    return clause.getSentence();
+        Matching matching = matchings.get();
+        int checked = 0;
+        while (true) {
+            Clause[] members;
+            synchronized (bucket) {
+                if (checked == bucket.size()) {
+                    bucket.add(clause);
+                    return null;
                 }
+                members = bucket.subList(checked, bucket.size()).toArray(new Clause[0]);
             }
-            result.add(icw.getOriginalClause());
-            return null;
+            for (Clause member : members) {
+                if (matching.isomorphism(member, clause)) {
+                    return member.getSentence();
+                }
+            }
+            checked += members.length;
         }
     }
 
-
+    // not to be called while contains is running
     public Set<Map.Entry<IsoClauseWrapper, List<Clause>>> entrySet() {
         return this.map.entrySet();
     }
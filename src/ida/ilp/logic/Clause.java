@@ -44,19 +44,20 @@ public class Clause {
 
     private LinkedHashSet<Literal> literals = new LinkedHashSet<Literal>();
 
-    private MultiMap<String, Literal> literalsByName;
+    // lazy caches below are built aside and then published at once, so threads sharing a clause never see them half-filled
+    private volatile MultiMap<String, Literal> literalsByName;
 
-    private MultiMap<Term, Literal> literalsByTerms;
+    private volatile MultiMap<Term, Literal> literalsByTerms;
 
     private int hashCode = -1;
 
     private Quantifier quantifier = null;
 
-    private Clause quantifierExtended;
-    private Clause negationRepresentation;
+    private volatile Clause quantifierExtended;
+    private volatile Clause negationRepresentation;
     private Boolean cliffhanger;
     private Boolean decomposable;
-    private String fullyCannonic;
+    private volatile String fullyCannonic;
     private Set<Pair<String, Integer>> predicates;
     private Clause swap;
     private SentenceState sentence;
@@ -157,19 +158,21 @@ public class Clause {
     }
 
     private void initLiteralsByTerms() {
-        this.literalsByTerms = new MultiMap<Term, Literal>();
+        MultiMap<Term, Literal> literalsByTerms = new MultiMap<Term, Literal>();
         for (Literal literal : literals) {
             for (int i = 0; i < literal.arity(); i++) {
                 literalsByTerms.put(literal.get(i), literal);
             }
         }
+        this.literalsByTerms = literalsByTerms;
     }
 
     private void initLiteralsByName() {
-        this.literalsByName = new MultiMap<String, Literal>();
+        MultiMap<String, Literal> literalsByName = new MultiMap<String, Literal>();
         for (Literal literal : literals) {
-            this.literalsByName.put(literal.predicate(), literal);
+            literalsByName.put(literal.predicate(), literal);
         }
+        this.literalsByName = literalsByName;
     }
 
     /**
@@ -765,17 +768,16 @@ public class Clause {
             // this.decomposable = connectedComponents().size() != 1;
             // our 2-variable approach allows for doing this
 //            this.decomposable = true;
-            if (null == quantifier) {
-                this.decomposable = false;
-            } else {
-                this.decomposable = 2 == quantifier.numberOfUsedVariables;
+            boolean decomposable = null != quantifier && 2 == quantifier.numberOfUsedVariables;
+            if (decomposable) {
                 for (Literal literal : literals) {
                     if (literal.getVariableSet().size() > 1) {
-                        this.decomposable = false;
+                        decomposable = false;
                         break;
                     }
                 }
             }
+            this.decomposable = decomposable;
         }
         return decomposable;
     }
@@ -786,17 +788,19 @@ public class Clause {
 
     public String getCannonic(boolean printNumber) {
         if (null == this.fullyCannonic) {
+            String cannonic;
             if (null == this.quantifier) {
-                this.fullyCannonic = toFOL();
+                cannonic = toFOL();
             } else {
-                this.fullyCannonic = "(" + this.quantifier.getPrefix() + " " + literals.stream().map(Literal::toString).sorted().collect(Collectors.joining(LITERALS_DELIMITER)) + ")";
+                cannonic = "(" + this.quantifier.getPrefix() + " " + literals.stream().map(Literal::toString).sorted().collect(Collectors.joining(LITERALS_DELIMITER)) + ")";
                 if (isQuantifierSwitchable()) {
                     String mirror = "(" + this.quantifier.getMirror().getPrefix() + " " + literals.stream().map(Literal::getMirror).map(Literal::toString).sorted().collect(Collectors.joining(LITERALS_DELIMITER)) + ")";
-                    if (this.fullyCannonic.compareTo(mirror) > 0) {
-                        this.fullyCannonic = mirror;
+                    if (cannonic.compareTo(mirror) > 0) {
+                        cannonic = mirror;
                     }
                 }
             }
+            this.fullyCannonic = cannonic;
         }
         return printNumber ? ("[" + getId() + "] " + this.fullyCannonic) : this.fullyCannonic;
     }
@@ -0,0 +1,33 @@
+package ida.ilp.logic.special;
+
+import ida.ilp.logic.Clause;
+
+// BruteForceICW as an IsoClauseWrapper; exact, since its canonical form is the smallest over all renamings of variables
+public class BruteForceClauseWrapper extends IsoClauseWrapper {
+
+    private final BruteForceICW icw;
+
+    public BruteForceClauseWrapper(Clause clause) {
+        this(clause, BruteForceICW.create(clause));
+    }
+
+    private BruteForceClauseWrapper(Clause clause, BruteForceICW icw) {
+        super(clause, icw.hashCode());
+        this.icw = icw;
+    }
+
+    @Override
+    public boolean isExact() {
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BruteForceClauseWrapper other && icw.equals(other.icw);
+    }
+
+    @Override
+    public String toString() {
+        return icw.getCanonical();
+    }
+}
@@ -0,0 +1,51 @@
+package ida.ilp.logic.special;
+
+import ida.ilp.logic.Clause;
+import ida.ilp.logic.subsumption.Matching;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// IsoClauseWrapper by the canonical form of the clause (see CanonicalLabeling), so equal wrappers are isomorphic and no
+// pairwise isomorphism check is needed, i.e. a bucket of equal wrappers holds a single clause. With verify, every match
+// is checked by the CSP-based isomorphism as well and a disagreement is an error.
+public class CanonicalClauseWrapper extends IsoClauseWrapper {
+
+    private final byte[] canonical;
+    private final boolean verify;
+
+    public CanonicalClauseWrapper(Clause clause, boolean verify) {
+        this(clause, CanonicalLabeling.canonicalBytes(clause), verify);
+    }
+
+    private CanonicalClauseWrapper(Clause clause, byte[] canonical, boolean verify) {
+        super(clause, Arrays.hashCode(canonical));
+        this.canonical = canonical;
+        this.verify = verify;
+    }
+
+    public byte[] getCanonical() {
+        return canonical;
+    }
+
+    @Override
+    public boolean isExact() {
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CanonicalClauseWrapper icw) || icw.hashCode() != this.hashCode() || !Arrays.equals(icw.canonical, this.canonical)) {
+            return false;
+        }
+        if (verify && !new Matching().isomorphism(icw.getOriginalClause(), this.getOriginalClause())) {
+            throw new IllegalStateException("Clauses with the same canonical form are not isomorphic:\t" + icw.getOriginalClause() + "\t" + this.getOriginalClause());
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return new String(canonical, StandardCharsets.UTF_8);
+    }
+}
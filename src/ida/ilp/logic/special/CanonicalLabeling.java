@@ -0,0 +1,166 @@
+package ida.ilp.logic.special;
+
+import ida.ilp.logic.Clause;
+import ida.ilp.logic.Literal;
+import ida.utils.Sugar;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+// Canonical labeling of a clause by individualization-refinement, in the manner of nauty. Colours of variables are refined
+// (see ClauseHypergraph); unless they are all distinct, the smallest non-singleton cell is picked and each of its variables
+// in turn gets a colour of its own, which is refined again, and so on. Every leaf of this search tree orders variables by
+// their colours, which gives a certificate: the literals with variables replaced by their ranks, sorted. The canonical
+// form is the smallest certificate over all leaves, so two clauses are isomorphic (up to renaming of variables) iff their
+// canonical forms are equal. Since the tree depends on the clause up to renaming only, hash collisions of colours merely
+// weaken the refinement, they never break exactness. Subtrees are skipped if an automorphism found so far (two leaves
+// with the same certificate) fixes the path to them and maps them onto an explored sibling.
+public class CanonicalLabeling {
+
+    private static final long INDIVIDUALIZED = 0x2545F4914F6CDD1DL;
+    private static final int MAX_AUTOMORPHISMS = 64; // kept for pruning; the labeling is exact regardless
+
+    private final ClauseHypergraph hypergraph;
+    private final List<int[]> automorphisms = Sugar.list();
+    private String best;
+    private int[] bestRanks; // of variables in the best leaf
+
+    private CanonicalLabeling(Clause clause) {
+        this.hypergraph = new ClauseHypergraph(clause);
+    }
+
+    // the canonical form of the clause as UTF-8 bytes
+    public static byte[] canonicalBytes(Clause clause) {
+        return canonicalForm(clause).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static String canonicalForm(Clause clause) {
+        CanonicalLabeling labeling = new CanonicalLabeling(clause);
+        labeling.search(labeling.hypergraph.refine(null), new int[0]);
+        return labeling.best;
+    }
+
+    private void search(long[] colours, int[] path) {
+        int[] cell = targetCell(colours);
+        if (null == cell) {
+            leaf(colours);
+            return;
+        }
+        List<Integer> explored = Sugar.list();
+        for (int variable : cell) {
+            if (isPruned(variable, explored, path)) {
+                continue;
+            }
+            long[] individualized = colours.clone();
+            individualized[variable] = ClauseHypergraph.mix(colours[variable], INDIVIDUALIZED);
+            int[] extended = Arrays.copyOf(path, path.length + 1);
+            extended[path.length] = variable;
+            search(hypergraph.refine(individualized), extended);
+            explored.add(variable);
+        }
+    }
+
+    // the variables of the smallest non-singleton cell, the one of the smallest colour among these; null if discrete
+    private int[] targetCell(long[] colours) {
+        long[] sorted = colours.clone();
+        Arrays.sort(sorted);
+        long target = 0;
+        int targetSize = Integer.MAX_VALUE;
+        for (int start = 0, end; start < sorted.length; start = end) {
+            end = start + 1;
+            while (end < sorted.length && sorted[end] == sorted[start]) {
+                end++;
+            }
+            if (end - start > 1 && end - start < targetSize) {
+                target = sorted[start];
+                targetSize = end - start;
+            }
+        }
+        if (Integer.MAX_VALUE == targetSize) {
+            return null;
+        }
+        int[] cell = new int[targetSize];
+        for (int v = 0, idx = 0; v < colours.length; v++) {
+            if (colours[v] == target) {
+                cell[idx++] = v;
+            }
+        }
+        return cell;
+    }
+
+    private boolean isPruned(int variable, List<Integer> explored, int[] path) {
+        for (int[] automorphism : automorphisms) {
+            if (!fixes(automorphism, path)) {
+                continue;
+            }
+            for (int sibling : explored) {
+                if (automorphism[sibling] == variable || automorphism[variable] == sibling) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean fixes(int[] automorphism, int[] path) {
+        for (int variable : path) {
+            if (automorphism[variable] != variable) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void leaf(long[] colours) {
+        long[] sorted = colours.clone();
+        Arrays.sort(sorted);
+        int[] ranks = new int[colours.length];
+        for (int v = 0; v < colours.length; v++) {
+            ranks[v] = Arrays.binarySearch(sorted, colours[v]);
+        }
+        String certificate = certificate(ranks);
+        int compare = null == best ? -1 : certificate.compareTo(best);
+        if (compare < 0) {
+            best = certificate;
+            bestRanks = ranks;
+        } else if (0 == compare && automorphisms.size() < MAX_AUTOMORPHISMS) {
+            // v goes where the variable of the same rank in the best leaf is
+            int[] byRank = new int[ranks.length];
+            for (int v = 0; v < ranks.length; v++) {
+                byRank[bestRanks[v]] = v;
+            }
+            int[] automorphism = new int[ranks.length];
+            for (int v = 0; v < ranks.length; v++) {
+                automorphism[v] = byRank[ranks[v]];
+            }
+            automorphisms.add(automorphism);
+        }
+    }
+
+    private String certificate(int[] ranks) {
+        String[] literals = new String[hypergraph.literals.length];
+        for (int l = 0; l < literals.length; l++) {
+            Literal literal = hypergraph.literals[l];
+            StringBuilder sb = new StringBuilder();
+            if (literal.isNegated()) {
+                sb.append('!');
+            }
+            sb.append(literal.predicate()).append('(');
+            int[] args = hypergraph.arguments[l];
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                if (args[i] < 0) {
+                    sb.append('\'').append(literal.get(i).name()); // constants never clash with ranks
+                } else {
+                    sb.append(ranks[args[i]]);
+                }
+            }
+            literals[l] = sb.append(')').toString();
+        }
+        Arrays.sort(literals);
+        return String.join(" ", literals);
+    }
+}
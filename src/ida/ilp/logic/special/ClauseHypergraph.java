@@ -0,0 +1,124 @@
+package ida.ilp.logic.special;
+
+import ida.ilp.logic.Clause;
+import ida.ilp.logic.Literal;
+import ida.ilp.logic.Term;
+import ida.ilp.logic.Variable;
+import ida.utils.Sugar;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A clause as an integer hypergraph: variables are vertices, literals are hyperedges with a label (sign, predicate, arity
+// and constants at their positions) and an ordered array of variable indices. Colours of variables are 64-bit values
+// refined by colour refinement (1-dimensional Weisfeiler-Lehman): a variable learns the label of each literal it occurs
+// in, its positions there, and the colours of all arguments in order. Colours only depend on the clause up to renaming
+// of variables, i.e. they may be compared among clauses.
+class ClauseHypergraph {
+
+    static final long CONSTANT = 0x632BE59BD9B4E019L; // colour of a non-variable argument
+
+    final Variable[] variables; // in order of their first occurrence
+    final Literal[] literals;
+    final long[] labels;
+    final int[][] arguments; // variable indices of literals, -1 for constants
+
+    ClauseHypergraph(Clause clause) {
+        Map<Variable, Integer> indices = new HashMap<>();
+        List<Variable> variables = Sugar.list();
+        this.literals = clause.literals().toArray(new Literal[0]);
+        this.labels = new long[literals.length];
+        this.arguments = new int[literals.length][];
+        for (int l = 0; l < literals.length; l++) {
+            Literal literal = literals[l];
+            long label = mix(mix(literal.isNegated() ? 1 : 2, literal.predicate().hashCode()), literal.arity());
+            int[] args = new int[literal.arity()];
+            for (int i = 0; i < literal.arity(); i++) {
+                Term term = literal.get(i);
+                if (term instanceof Variable variable) {
+                    Integer index = indices.get(variable);
+                    if (null == index) {
+                        index = variables.size();
+                        indices.put(variable, index);
+                        variables.add(variable);
+                    }
+                    args[i] = index;
+                } else {
+                    args[i] = -1;
+                    label = mix(label, mix(i, term.name().hashCode()));
+                }
+            }
+            labels[l] = label;
+            arguments[l] = args;
+        }
+        this.variables = variables.toArray(new Variable[0]);
+    }
+
+    // refines the colours until the number of colour classes stops growing; all alike at the start if null
+    long[] refine(long[] colours) {
+        colours = null == colours ? new long[variables.length] : colours;
+        int classes = countClasses(colours);
+        while (true) {
+            long[] next = new long[colours.length];
+            for (int l = 0; l < labels.length; l++) {
+                int[] args = arguments[l];
+                long colour = literalColour(l, colours);
+                for (int i = 0; i < args.length; i++) {
+                    if (args[i] >= 0) {
+                        // a multiset of messages is summed, so it does not depend on the order of literals
+                        next[args[i]] += fmix(mix(colour, i));
+                    }
+                }
+            }
+            for (int v = 0; v < next.length; v++) {
+                next[v] = mix(colours[v], next[v]);
+            }
+            int refined = countClasses(next);
+            if (refined <= classes) {
+                return next;
+            }
+            colours = next;
+            classes = refined;
+        }
+    }
+
+    long literalColour(int literal, long[] colours) {
+        long colour = labels[literal];
+        for (int argument : arguments[literal]) {
+            colour = mix(colour, argument < 0 ? CONSTANT : colours[argument]);
+        }
+        return colour;
+    }
+
+    static int countClasses(long[] colours) {
+        if (colours.length == 0) {
+            return 0;
+        }
+        long[] sorted = colours.clone();
+        Arrays.sort(sorted);
+        int classes = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[i - 1]) {
+                classes++;
+            }
+        }
+        return classes;
+    }
+
+    // order-dependent combination of a hash with another value
+    static long mix(long hash, long value) {
+        return fmix(hash + 0x9E3779B97F4A7C15L * fmix(value));
+    }
+
+    // the finalizer of MurmurHash3, a bijection on longs with full avalanche
+    static long fmix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,96 @@
+package ida.ilp.logic.special;
+
+import ida.ilp.logic.Clause;
+import ida.ilp.logic.Literal;
+import ida.ilp.logic.Variable;
+import ida.ilp.logic.subsumption.Matching;
+import ida.utils.Sugar;
+
+import java.util.Arrays;
+import java.util.List;
+
+// IsoClauseWrapper with the colour refinement (1-dimensional Weisfeiler-Lehman) done on ints, see ClauseHypergraph, so
+// neither strings nor literals are built while hashing. The refinement is at least as strong as that of IsoClauseWrapper:
+// a variable learns the label of each literal it occurs in, its positions there, and the colours of all arguments in
+// order, not just the set of its neighbours. The invariant is the sorted colours of variables and of literals; the
+// coloured clause is built only for equals.
+public class IntIsoClauseWrapper extends IsoClauseWrapper {
+
+    private final long[] invariant; // sorted colours of variables followed by sorted colours of literals
+    private final Variable[] variables; // in order of their first occurrence
+    private final long[] colours; // of variables
+    private volatile Clause enrichedClause; // the clause with colours as unary literals, built lazily for equals
+
+    public IntIsoClauseWrapper(Clause clause) {
+        this(clause, new ClauseHypergraph(clause));
+    }
+
+    private IntIsoClauseWrapper(Clause clause, ClauseHypergraph hypergraph) {
+        this(clause, hypergraph, hypergraph.refine(null));
+    }
+
+    private IntIsoClauseWrapper(Clause clause, ClauseHypergraph hypergraph, long[] colours) {
+        this(clause, hypergraph.variables, colours, invariant(hypergraph, colours));
+    }
+
+    private IntIsoClauseWrapper(Clause clause, Variable[] variables, long[] colours, long[] invariant) {
+        super(clause, hash(invariant));
+        this.invariant = invariant;
+        this.variables = variables;
+        this.colours = colours;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof IntIsoClauseWrapper icw)) {
+            return false;
+        }
+        if (icw.hashCode() != this.hashCode() || icw.variables.length != this.variables.length || !Arrays.equals(icw.invariant, this.invariant)) {
+            return false;
+        }
+        if (icw.getOriginalClause().literals().equals(this.getOriginalClause().literals())) {
+            return true;
+        }
+        Matching m = new Matching();
+        m.setSubsumptionMode(Matching.OI_SUBSUMPTION);
+        return m.subsumption(icw.enriched(), this.enriched());
+    }
+
+    // with the same invariant, the number of literals is the same, so an OI-subsumption is an isomorphism respecting colours
+    private Clause enriched() {
+        Clause enriched = this.enrichedClause;
+        if (null == enriched) {
+            List<Literal> literals = Sugar.listFromCollections(getOriginalClause().negationToSpecialPrefix().literals());
+            for (int v = 0; v < variables.length; v++) {
+                literals.add(new Literal("#" + Long.toHexString(colours[v]), variables[v]));
+            }
+            enriched = new Clause(literals);
+            this.enrichedClause = enriched;
+        }
+        return enriched;
+    }
+
+    @Override
+    public String toString() {
+        return getOriginalClause() + " " + Long.toHexString(Arrays.hashCode(invariant));
+    }
+
+    private static long[] invariant(ClauseHypergraph hypergraph, long[] colours) {
+        long[] invariant = new long[colours.length + hypergraph.labels.length];
+        System.arraycopy(colours, 0, invariant, 0, colours.length);
+        for (int l = 0; l < hypergraph.labels.length; l++) {
+            invariant[colours.length + l] = hypergraph.literalColour(l, colours);
+        }
+        Arrays.sort(invariant, 0, colours.length);
+        Arrays.sort(invariant, colours.length, invariant.length);
+        return invariant;
+    }
+
+    private static int hash(long[] invariant) {
+        long hash = invariant.length;
+        for (long value : invariant) {
+            hash = ClauseHypergraph.mix(hash, value);
+        }
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
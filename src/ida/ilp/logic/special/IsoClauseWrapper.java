@@ -47,6 +47,12 @@ public class IsoClauseWrapper {
         this(new Clause(literals));
     }
 
+    // for wrappers computing their own invariants, see IntIsoClauseWrapper; they have to override equals and toString
+    protected IsoClauseWrapper(Clause clause, int hashCode) {
+        this.originalClause = clause;
+        this.hashCode = hashCode;
+    }
+
     private static int computeHashCode(Clause c) {
         List<String> strs = new ArrayList<String>();
         for (Literal l : c.literals()) {
@@ -193,8 +199,13 @@ public class IsoClauseWrapper {
         return this.hashCode;
     }
 
+    // true if equal wrappers are always isomorphic, so no further isomorphism check is needed within a bucket
+    public boolean isExact() {
+        return false;
+    }
+
     public boolean equals(Object o) {
-        if (o instanceof IsoClauseWrapper) {
+        if (o instanceof IsoClauseWrapper && o.getClass() == IsoClauseWrapper.class) {
             long m1 = System.nanoTime();
             IsoClauseWrapper icw = (IsoClauseWrapper) o;
             if (icw.hashCode() != this.hashCode() || icw.originalClause.countLiterals() != this.originalClause.countLiterals() ||
@@ -0,0 +1,48 @@
+package ida.ilp.logic.special;
+
+import ida.ilp.logic.Clause;
+
+import java.util.List;
+import java.util.function.Function;
+
+// How clauses (representations of sentences, cell graphs) are wrapped for isomorphism checks, i.e. hashed into buckets
+// of possibly isomorphic clauses. A new engine only needs a subclass of IsoClauseWrapper and a name here.
+public interface IsoStrategy {
+
+    // bruteForce tries all renamings of variables, so it is meant for tiny clauses only
+    List<String> NAMES = List.of("icw", "int", "canonical", "bruteForce");
+
+    String getName();
+
+    IsoClauseWrapper wrap(Clause clause);
+
+    // verify applies to exact strategies, whose matches are then checked by the CSP-based isomorphism as well
+    static IsoStrategy create(String name, boolean verify) {
+        return switch (name) {
+            case "icw" -> named(name, IsoClauseWrapper::create);
+            case "int" -> named(name, IntIsoClauseWrapper::new);
+            case "canonical" -> named(name, clause -> new CanonicalClauseWrapper(clause, verify));
+            case "bruteForce" -> named(name, BruteForceClauseWrapper::new);
+            default -> throw new IllegalStateException("Unknown isomorphism strategy " + name + ", use one of " + NAMES + ".");
+        };
+    }
+
+    static IsoStrategy named(String name, Function<Clause, IsoClauseWrapper> wrapper) {
+        return new IsoStrategy() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public IsoClauseWrapper wrap(Clause clause) {
+                return wrapper.apply(clause);
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+}
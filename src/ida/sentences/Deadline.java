@@ -0,0 +1,57 @@
+package ida.sentences;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The time limit of the search, shared by all of its stages. Besides the clock gates between stages, long-running stages
+// observe it as well: parallel streams skip the rest of their sentences, and external processes (Prover9, Julia) are
+// destroyed once it expires. Whatever a stage has not finished by then is unverified and thrown away by its caller, so
+// a stage overruns the limit by at most the sentence at hand.
+public class Deadline {
+
+    private static final Set<Process> watched = ConcurrentHashMap.newKeySet();
+    private static volatile boolean limited;
+    private static volatile long end; // in nanoseconds, valid if limited
+    private static Thread timer;
+
+    // timeLimit in minutes; null or non-positive means no limit
+    public static synchronized void install(long start, Long timeLimit) {
+        if (null != timer) {
+            timer.interrupt();
+            timer = null;
+        }
+        limited = null != timeLimit && timeLimit > 0;
+        if (!limited) {
+            return;
+        }
+        end = start + timeLimit * 60_000_000_000L; // 1min = 60*10^9 nanoseconds
+        timer = new Thread(() -> {
+            try {
+                while (!expired()) {
+                    Thread.sleep(Math.max(1, (end - System.nanoTime()) / 1_000_000));
+                }
+            } catch (InterruptedException e) {
+                return; // replaced by another deadline
+            }
+            watched.forEach(Process::destroyForcibly);
+        }, "deadline");
+        timer.setDaemon(true);
+        timer.start();
+    }
+
+    public static boolean expired() {
+        return limited && System.nanoTime() - end >= 0;
+    }
+
+    // the process is destroyed once the deadline expires; unwatch it when it is done
+    public static void watch(Process process) {
+        watched.add(process);
+        if (expired()) {
+            process.destroyForcibly();
+        }
+    }
+
+    public static void unwatch(Process process) {
+        watched.remove(process);
+    }
+}
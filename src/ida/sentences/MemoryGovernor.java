@@ -0,0 +1,84 @@
+package ida.sentences;
+
+import ida.sentences.caches.CannonCache;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Watches the heap so that a search running out of memory slows down instead of crashing. The JVM signals pressure
+// whenever a garbage collection leaves a heap pool (i.e. the old generation) occupied above the threshold. The memo of
+// canonical forms is dropped right away, since it may be cleared at any time; everything else is up to the search at
+// its next safe point, i.e. between chunks or layers, where each signal escalates the relief (see SentenceFinder).
+public class MemoryGovernor {
+
+    private final double threshold; // fraction of the pool after a collection, 0 means no governor
+    private final AtomicInteger signals = new AtomicInteger();
+    private volatile long lastUsed; // of the pool exceeding the threshold, in bytes
+    private volatile long lastMax;
+    private int level; // how many times the search has been asked for relief
+
+    private MemoryGovernor(double threshold) {
+        this.threshold = threshold;
+    }
+
+    public boolean isEnabled() {
+        return threshold > 0;
+    }
+
+    // the number of signals since the previous call; a positive one raises the level of relief
+    public int takeSignals() {
+        int taken = signals.getAndSet(0);
+        if (taken > 0) {
+            level++;
+        }
+        return taken;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public String describePressure() {
+        return String.format("%.1f %% of %d MB after a collection", 100.0 * lastUsed / Math.max(1, lastMax), lastMax >> 20);
+    }
+
+    private void watch() {
+        boolean watched = false;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            // pools supporting the usage threshold are the long-lived ones (old generation), unlike eden and survivors
+            if (MemoryType.HEAP == pool.getType() && pool.isUsageThresholdSupported() && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                pool.setCollectionUsageThreshold((long) (max * threshold));
+                watched = true;
+            }
+        }
+        if (!watched) {
+            return;
+        }
+        NotificationListener listener = (notification, handback) -> {
+            if (!MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+                return;
+            }
+            MemoryNotificationInfo info = MemoryNotificationInfo.from((CompositeData) notification.getUserData());
+            lastUsed = info.getUsage().getUsed();
+            lastMax = info.getUsage().getMax();
+            CannonCache.getInstance().clear();
+            signals.incrementAndGet();
+        };
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(listener, null, null);
+    }
+
+    public static MemoryGovernor create(SentenceSetup setup) {
+        MemoryGovernor governor = new MemoryGovernor(setup.memoryThreshold);
+        if (governor.isEnabled()) {
+            governor.watch();
+        }
+        return governor;
+    }
+}
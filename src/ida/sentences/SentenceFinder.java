@@ -9,11 +9,28 @@ import ida.ilp.logic.special.IsoClauseWrapper;
 import ida.ilp.logic.subsumption.Matching;
 import ida.sentences.caches.ClausesCache;
 import ida.sentences.caches.LiteralsCache;
+import ida.sentences.distributed.Coordinator;
+import ida.sentences.distributed.Exchange;
+import ida.sentences.distributed.LayerReport;
+import ida.sentences.filters.CanonicalAugmentation;
+import ida.sentences.filters.ClauseCompatibility;
 import ida.sentences.filters.SingleFilter;
 import ida.sentences.filters.JoiningFilter;
+import ida.sentences.filters.JoiningFilterChain;
+import ida.sentences.filters.SingleFilterChain;
 import ida.sentences.generators.ClausesGenerator;
 import ida.sentences.generators.LiteralsGenerator;
 import ida.sentences.generators.PredicateGenerator;
+import ida.sentences.benchmarks.IsoBenchmark;
+import ida.sentences.metrics.DfsBatch;
+import ida.sentences.metrics.MetricsLog;
+import ida.sentences.storage.CanonicalSet;
+import ida.sentences.storage.Checkpoint;
+import ida.sentences.storage.ExternalSort;
+import ida.sentences.storage.IdLayer;
+import ida.sentences.storage.LayerStore;
+import ida.sentences.storage.MappedLayer;
+import ida.sentences.storage.OutputSink;
 import ida.utils.Sugar;
 import ida.utils.collections.Counters;
 import ida.utils.collections.MultiList;
@@ -22,9 +39,20 @@ import ida.utils.tuples.Triple;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -37,6 +65,8 @@ public class SentenceFinder {
 
     private final String ENDING_MESSAGE = "the search has ended!";
     private final String OUT_OF_TIME_MESSAGE = "the search has ended because of the time limit!";
+    private static final int FIRST_CHUNK_SIZE = 1 << 20; // for layers materialized at once so far
+    private static final int MIN_CHUNK_SIZE = 1 << 10;
     private final String SEEDS_START = "seed follow";
     private final String SEEDS_END = "end of seed";
     private final SentenceSetup setup;
@@ -47,6 +77,13 @@ public class SentenceFinder {
     public final List<Literal> literals;
     private final Matching matching = new Matching();
     private final SentenceState emptySentence;
+    private final MetricsLog metrics;
+    private final MemoryGovernor memory;
+    private final IsoBenchmark isoBenchmark; // null unless strategies are to be compared
+    private int chunkSize; // BFS only; setup.chunkSize unless shrunk under memory pressure
+    private LayerStore spillStore; // memory-mapped layers spilled under memory pressure, created on demand
+    private ClauseCompatibility compatibility; // set up by generate, null means that joining filters are evaluated one by one
+    private CanonicalAugmentation augmentation; // set up by generate in BFS, null means that all extensions are generated
 
     //    private final MultiList<Clause, SentenceState> cellGraphs = new MultiList<>(); // this is just a dev tool
 //    private final MultiList<String, SentenceState> cellGraphsCanonical = new MultiList<>(); // this is just a dev tool
@@ -68,6 +105,10 @@ public class SentenceFinder {
         this.literals = LiteralsGenerator.generate(setup.variables, setup.predicates); // this important so we have intertwined literals before any other parsing take places!
         this.literals.sort(Comparator.comparing(Literal::toString));
         this.emptySentence = new SentenceState(Sugar.list(), setup);
+        this.metrics = MetricsLog.create(setup);
+        this.memory = MemoryGovernor.create(setup);
+        this.isoBenchmark = setup.isoBenchmark.isEmpty() ? null : new IsoBenchmark(setup.isoBenchmark, metrics);
+        this.chunkSize = setup.chunkSize;
 
         if (!BFS.equals(setup.mode) && !DFS.equals(setup.mode)) {
             throw new IllegalStateException("Unknown mode value: " + setup.mode);
@@ -77,7 +118,7 @@ public class SentenceFinder {
 
     public void loadAndContinueSearch() {
         if (DFS.equals(setup.mode)) {
-            throw new IllegalStateException("DFS mode does not support load & continue with search.");
+            throw new IllegalStateException("DFS mode does not support load & continue with search from the text log; use loadCheckpoint instead.");
         }
         SentenceState seed = null;
         List<Clause> baseClause = Sugar.list();
@@ -166,9 +207,122 @@ public class SentenceFinder {
                     .forEach(sentence -> printSerialization(sentenceToSerialization(sentence), false));
         }
         int maxLevel = sentences.keySet().stream().mapToInt(i -> i).max().orElse(0);
+        if (outOfTime && maxLevel > 0) { // the last layer may have been cut by the time limit
+            generate(seed, baseClause, sentences, cellGraphResolver, maxLevel);
+            return;
+        }
         generate(seed, baseClause, sentences, cellGraphResolver, maxLevel + 1);
     }
 
+    public void loadCheckpointAndContinueSearch() {
+        long start = System.nanoTime();
+        CellGraphFilter cellGraphResolver = setup.canonicalCellGraphs ? CanonicalFilter.create(setup) : IsomorphicFilter.create(setup);
+        Checkpoint checkpoint = Checkpoint.load(Paths.get(setup.loadCheckpoint), setup, cellGraphResolver);
+        printComment("checkpoint " + setup.loadCheckpoint + " loaded within " + timeToNowInSeconds(start));
+        boolean dfs = Checkpoint.DFS == checkpoint.kind;
+        if (dfs != DFS.equals(setup.mode)) {
+            throw new IllegalStateException("The checkpoint does not match the search mode.");
+        }
+        if (dfs ? checkpoint.frontier.isEmpty() : checkpoint.nextLevel > setup.maxOverallLiterals) {
+            printComment("the previous search has ended, thus the search cannot continue from that place!");
+            printComment(ENDING_MESSAGE);
+            return;
+        }
+
+        if (null != checkpoint.seed) {
+            checkSeed(checkpoint.seed, setup.predicates, setup.variables);
+            printComment(SEEDS_START);
+            printCandidate(checkpoint.seed.toFol());
+            if (setup.statesStoring) {
+                printMessage(checkpoint.seed.toFol(), false, System.err);
+            }
+            printComment(SEEDS_END);
+        }
+        if (dfs) {
+            printComment("continuing with " + checkpoint.frontier.size() + " open nodes and " + checkpoint.closed.size() + " closed ones");
+        }
+        generate(checkpoint.seed, checkpoint.basis, checkpoint.sentences, cellGraphResolver, checkpoint.nextLevel, dfs ? checkpoint : null);
+    }
+
+    // the distributed BFS; clauses are generated here, while layers are computed by worker processes (see runWorker)
+    public void coordinate() {
+        if (!BFS.equals(setup.mode) || !setup.negations || !setup.isomorphicSentences || !setup.permutingArguments
+                || !setup.lexicographicalMatching || setup.statesStoring || setup.debug || null != setup.checkpoint) {
+            throw new IllegalStateException("Worker processes support only BFS with lexicographical matching, without statesStoring, debug, and checkpoints.");
+        }
+        long startTime = System.nanoTime();
+        Deadline.install(startTime, setup.timeLimit);
+        SentenceState seed = null;
+        if (!setup.seed.isBlank()) {
+            seed = parseSeed(setup.seed);
+            checkSeed(seed, setup.predicates, setup.variables);
+            printComment(SEEDS_START);
+            printCandidate(seed.toFol());
+            printComment(SEEDS_END);
+        }
+        printComment("there are " + this.quantifiers.size() + " quantifiers and " + this.literals.size() + " literals");
+        ClausesGenerator clausesGen = new ClausesGenerator(this.literals, this.quantifiers, this.quantifierSuccessors, this.quantifiersMirrors, PredicateGenerator.generateFollowers(setup.predicates), setup.debug);
+        List<Clause> allClauses = generateClauses(clausesGen);
+        indexClausesIfNeeded(null == seed ? allClauses : Sugar.listFromCollections(Sugar.setFromCollections(allClauses, seed.clauses)));
+
+        Coordinator coordinator = Coordinator.create(setup);
+        Checkpoint.storeBfs(coordinator.getStartingPoint(), setup, allClauses, seed, new MultiList<>(), CanonicalFilter.create(setup), 1);
+        printComment("starting " + setup.workers + " worker processes sharing " + coordinator.getDirectory());
+        coordinator.start();
+
+        StringBuilder info = new StringBuilder("info: ");
+        long count = 0l;
+        for (int numberOfLiterals = 1; numberOfLiterals <= setup.maxOverallLiterals; numberOfLiterals++) {
+            LayerReport layer = coordinator.awaitLayer(numberOfLiterals);
+            long printingStart = System.nanoTime();
+            coordinator.merge(numberOfLiterals, this::printCandidate);
+            long printing = System.nanoTime() - printingStart;
+            count += layer.printed;
+            printComment("there are " + layer.raw + " sentences generated within " + toSeconds(layer.generation));
+            printComment("there are " + layer.afterPruning + " sentence after pruning done within " + toSeconds(layer.pruning));
+            printComment("there are " + layer.printed + " sentence after filtering within " + toSeconds(layer.filtering));
+            printComment("there were " + layer.afterPruning + " after pruning from which " + layer.hiddenByFilters + " were hidden by hiding filters and exactly " + layer.hiddenByCellGraphs + " were hidden using cell graph pruning and so " + layer.printed + " left");
+
+            long layerTime = toSeconds(layer.generation) + toSeconds(layer.pruning) + toSeconds(layer.filtering) + toSeconds(printing);
+            printComment("finished layer with exactly " + numberOfLiterals + " literals, overall time was " + (layerTime));
+            info.append(numberOfLiterals).append(": ").append(layer.printed)
+                    .append(" (").append(layer.afterPruning).append(", ").append(layer.raw).append(")")
+                    .append(" in ").append(layerTime)
+                    .append(" [ ").append(toSeconds(layer.generation)).append(", ").append(toSeconds(layer.pruning)).append(", ")
+                    .append(toSeconds(layer.filtering)).append(", ").append(toSeconds(printing)).append("]; ");
+            printComment(info.toString());
+            metrics.record("bfs")
+                    .put("layer", numberOfLiterals)
+                    .put("workers", setup.workers)
+                    .put("raw", layer.raw)
+                    .put("afterPruning", layer.afterPruning)
+                    .put("hiddenByFilters", layer.hiddenByFilters)
+                    .put("hiddenByCellGraphs", layer.hiddenByCellGraphs)
+                    .put("printed", layer.printed)
+                    .putMillis("generation", layer.generation)
+                    .putMillis("pruning", layer.pruning)
+                    .putMillis("filtering", layer.filtering)
+                    .putMillis("printing", printing)
+                    .write();
+
+            boolean proceed = numberOfLiterals < setup.maxOverallLiterals && !shouldEnd();
+            coordinator.next(numberOfLiterals, proceed);
+            if (!proceed) {
+                break;
+            }
+        }
+        coordinator.finish();
+        printComment("ending with " + count + " in " + timeToNowInSeconds(startTime));
+        printComment(shouldEnd() ? OUT_OF_TIME_MESSAGE : ENDING_MESSAGE);
+    }
+
+    public void runAsWorker() {
+        CellGraphFilter cellGraphResolver = setup.canonicalCellGraphs ? CanonicalFilter.create(setup) : IsomorphicFilter.create(setup);
+        Checkpoint start = Checkpoint.load(Coordinator.startingPoint(Paths.get(setup.workDir)), setup, cellGraphResolver);
+        printComment("worker " + setup.workerId + " of " + setup.workers + " starting in " + setup.workDir);
+        generate(start.seed, start.basis, start.sentences, cellGraphResolver, start.nextLevel);
+    }
+
     public void startFromSeed(String seed) {
         SentenceState sentence = parseSeed(seed);
         checkSeed(sentence, setup.predicates, setup.variables);
@@ -241,7 +395,13 @@ public class SentenceFinder {
     }
 
     public void generate(SentenceState seed, List<Clause> allClauses, MultiList<Integer, SentenceState> sentences, CellGraphFilter cellGraphResolver, int startLevel) {
+        generate(seed, allClauses, sentences, cellGraphResolver, startLevel, null);
+    }
+
+    // dfsCheckpoint, if not null, holds the frontier and the closed list of a DFS run to continue with
+    private void generate(SentenceState seed, List<Clause> allClauses, MultiList<Integer, SentenceState> sentences, CellGraphFilter cellGraphResolver, int startLevel, Checkpoint dfsCheckpoint) {
         long startTime = System.nanoTime();
+        Deadline.install(startTime, setup.workerId >= 0 ? null : setup.timeLimit); // workers end when the coordinator says so
         printComment("there are " + this.quantifiers.size() + " quantifiers and " + this.literals.size() + " literals");
         ClausesGenerator clausesGen = new ClausesGenerator(this.literals, this.quantifiers, this.quantifierSuccessors, this.quantifiersMirrors, PredicateGenerator.generateFollowers(setup.predicates), setup.debug);
         if (null == allClauses) {
@@ -279,44 +439,84 @@ public class SentenceFinder {
         });
 
         long printedOut = 0l;
+        List<SingleFilter<SentenceState>> sentenceFilters = adaptive(getSentenceFilters(clausesGen, this.setup));
+        List<JoiningFilter> joiningFilters = getJoiningFilters(clausesGen, this.setup);
+        if (setup.canonicalAugmentation && BFS.equals(setup.mode) && setup.workerId < 0 && null == seed) {
+            if (setup.negations && setup.isomorphicSentences && setup.permutingArguments && setup.lexicographicalMatching) {
+                this.augmentation = new CanonicalAugmentation(setup, joiningFilters);
+                joiningFilters = Sugar.listFromCollections(joiningFilters);
+                joiningFilters.add(augmentation);
+            } else {
+                printComment("canonical augmentation needs ultra-canonical forms, i.e. negations, isomorphic sentences, permuting arguments, and lexicographical matching, so all extensions are generated");
+            }
+        }
+        joiningFilters = adaptiveJoining(precomputePairwise(allClauses, joiningFilters));
+        List<SingleFilter<SentenceState>> hideOnlyFilters = adaptive(getHideOnlyFilters(clausesGen, this.setup));
         if (BFS.equals(setup.mode)) {
             MultiList<Integer, Clause> clausesByLength = new MultiList<>();
             allClauses.forEach(clause -> clausesByLength.put(clause.countLiterals(), clause));
-            printedOut = runConnection(sentences, cellGraphResolver, clausesByLength, getSentenceFilters(clausesGen, this.setup),
-                    getJoiningFilters(clausesGen, this.setup), getHideOnlyFilters(clausesGen, this.setup), startLevel, seed,
-                    clausesGen);
+            if (setup.workerId >= 0) {
+                printedOut = runWorker(cellGraphResolver, clausesByLength, sentenceFilters, joiningFilters, hideOnlyFilters, seed,
+                        clausesGen, clausesToCheck);
+                printComment("worker ending with " + printedOut + " in " + timeToNowInSeconds(startTime));
+                return;
+            }
+            LayerStore layerStore = LayerStore.create(setup.layerStore, clausesToCheck, setup);
+            printedOut = runConnection(sentences, cellGraphResolver, clausesByLength, sentenceFilters, joiningFilters,
+                    hideOnlyFilters, startLevel, seed, clausesGen, layerStore, allClauses);
         } else if (DFS.equals(setup.mode)) {
-            printedOut = runDFS(allClauses, cellGraphResolver, getSentenceFilters(clausesGen, this.setup),
-                    getJoiningFilters(clausesGen, this.setup), getHideOnlyFilters(clausesGen, this.setup), seed, clausesGen);
+            if (setup.dfsThreads > 0) {
+                printedOut = runParallelDFS(allClauses, cellGraphResolver, sentenceFilters, joiningFilters, hideOnlyFilters, seed,
+                        clausesGen, dfsCheckpoint);
+            } else {
+                printedOut = runDFS(allClauses, cellGraphResolver, sentenceFilters, joiningFilters, hideOnlyFilters, seed,
+                        clausesGen, dfsCheckpoint);
+            }
         }
+        printFilterOrder("connection", joiningFilters);
+        printFilterOrder("sentence", sentenceFilters);
+        printFilterOrder("hide", hideOnlyFilters);
 
         printComment("ending with " + printedOut + " in " + timeToNowInSeconds(startTime));
-        printComment(shouldEnd(startTime) ? OUT_OF_TIME_MESSAGE : ENDING_MESSAGE);
+        printComment(shouldEnd() ? OUT_OF_TIME_MESSAGE : ENDING_MESSAGE);
     }
 
-    private long runDFS(List<Clause> clauses, CellGraphFilter cellGraphResolver, List<SingleFilter<SentenceState>> sentenceFilters, List<JoiningFilter> joiningFilters, List<SingleFilter<SentenceState>> hideOnlyFilters, SentenceState seed, ClausesGenerator clausesGenerator) {
+    private long runDFS(List<Clause> clauses, CellGraphFilter cellGraphResolver, List<SingleFilter<SentenceState>> sentenceFilters, List<JoiningFilter> joiningFilters, List<SingleFilter<SentenceState>> hideOnlyFilters, SentenceState seed, ClausesGenerator clausesGenerator, Checkpoint resumed) {
         long start = System.nanoTime();
         long printedOut = 0l;
-        if (null == seed) {
-            seed = emptySentence;
-        }
-        Set<String> closedList = ConcurrentHashMap.newKeySet();
         if (!setup.negations || !setup.isomorphicSentences || !setup.permutingArguments || !setup.lexicographicalMatching) {
             throw new IllegalStateException();
         }
+        CanonicalSet closedList = null == resumed ? CanonicalSet.create(setup) : resumed.closed;
         Stack<SentenceState> queue = new Stack<>();
-        queue.add(seed);
+        if (null == resumed) {
+            queue.add(null == seed ? emptySentence : seed);
+        } else {
+            queue.addAll(resumed.frontier);
+            printedOut = resumed.printed;
+        }
+        DfsBatch dfsBatch = new DfsBatch();
+        long lastCheckpoint = System.nanoTime();
         while (!queue.isEmpty()) {
+            if (null != setup.checkpoint && isCheckpointDue(lastCheckpoint)) {
+                storeDfsCheckpoint(clauses, seed, queue, closedList, printedOut, cellGraphResolver);
+                lastCheckpoint = System.nanoTime();
+            }
             SentenceState node = queue.pop();
+            long generationStart = System.nanoTime();
             Stream<SentenceState> refinements = connect(node, clauses, joiningFilters);
             List<SentenceState> children = refinements.parallel()
-                    .filter(sentence -> sentenceFilters.stream().allMatch(filter -> filter.test(sentence))).toList();
+                    .filter(sentence -> verified(sentence, sentenceFilters)).toList();
             int allChildren = children.size();
+            long pruningStart = System.nanoTime();
             children = children.parallelStream().filter(sentence -> closedList.add(sentence.getUltraCannonic()))
                     .toList();
             int afterPruning = children.size();
+            long filteringStart = System.nanoTime();
 
-            if (shouldEnd(start)) {
+            if (shouldEnd()) {
+                children.forEach(sentence -> closedList.remove(sentence.getUltraCannonic()));
+                queue.push(node);
                 break;
             }
 
@@ -326,15 +526,20 @@ public class SentenceFinder {
 
 
             // hiding (e.g. reflexive atoms), cell-graph,...
+            List<SentenceState> unseen = children;
+            children = fillInCellGraphs(children, cellGraphResolver);
             Set<SentenceState> hide = ConcurrentHashMap.newKeySet();
             children.parallelStream()
                     .filter(sentence -> !hideOnlyFilters.stream().allMatch(f -> f.test(sentence)))
                     .forEach(hide::add);
-            resolveCellGraphHiding(children, hide, cellGraphResolver, clausesGenerator);
 
-            if (shouldEnd(start)) {
+            if (shouldEnd()) { // the cell graph filter is untouched so far, so the node is opened anew after a resume
+                unseen.forEach(sentence -> closedList.remove(sentence.getUltraCannonic()));
+                queue.push(node);
                 break;
             }
+            // from now on, the node is finished even past the deadline, since its children are known to the cell graph filter
+            resolveCellGraphHiding(children, hide, cellGraphResolver, clausesGenerator);
 
             if (debug) {
                 debugOutput("after-filtering", children.stream().filter(sentence -> !hide.contains(sentence)).toList());
@@ -350,7 +555,9 @@ public class SentenceFinder {
                     .map(SentenceState::getUltraCannonic)
 //                    .map(s -> s.getUltraCannonic() + "\t;\t" + (null == s.getCanonicalCellGraph() ? s.getCellGraph() : s.getCanonicalCellGraph()))
                     .sorted().forEach(this::printCandidate);
-            Long printing = timeToNowInSeconds(printingStart);
+            dfsBatch.add(allChildren, afterPruning, hide.size(), printedChildren, pruningStart - generationStart,
+                    filteringStart - pruningStart, printingStart - filteringStart, System.nanoTime() - printingStart);
+            dfsBatch.report(metrics, setup.metricsBatch, false);
 
             if (debug) {
                 clausesGenerator.flushLogger();
@@ -369,9 +576,205 @@ public class SentenceFinder {
             node.freeMemory();
 
         }
+        dfsBatch.report(metrics, setup.metricsBatch, true);
+        if (null != setup.checkpoint) {
+            storeDfsCheckpoint(clauses, seed, queue, closedList, printedOut, cellGraphResolver);
+        }
         return printedOut;
     }
 
+    private boolean isCheckpointDue(long lastCheckpoint) {
+        return setup.checkpointInterval <= (System.nanoTime() - lastCheckpoint) / 60_000_000_000L;
+    }
+
+    private void storeDfsCheckpoint(List<Clause> clauses, SentenceState seed, Collection<SentenceState> frontier, CanonicalSet closedList,
+                                    long printedOut, CellGraphFilter cellGraphResolver) {
+        long start = System.nanoTime();
+        OutputSink.syncAll(); // the output is never behind a checkpoint
+        Checkpoint.storeDfs(Paths.get(setup.checkpoint), setup, clauses, seed, frontier, closedList, printedOut, cellGraphResolver);
+        printComment("checkpoint stored within " + timeToNowInSeconds(start) + " with " + frontier.size() + " open nodes");
+    }
+
+    private long runParallelDFS(List<Clause> clauses, CellGraphFilter cellGraphResolver, List<SingleFilter<SentenceState>> sentenceFilters, List<JoiningFilter> joiningFilters, List<SingleFilter<SentenceState>> hideOnlyFilters, SentenceState seed, ClausesGenerator clausesGenerator, Checkpoint resumed) {
+        if (!setup.negations || !setup.isomorphicSentences || !setup.permutingArguments || !setup.lexicographicalMatching) {
+            throw new IllegalStateException();
+        }
+        printComment("running DFS with " + setup.dfsThreads + " work-stealing threads");
+        ParallelDFS search = new ParallelDFS(clauses, cellGraphResolver, sentenceFilters, joiningFilters, hideOnlyFilters, seed, clausesGenerator,
+                null == resumed ? CanonicalSet.create(setup) : resumed.closed);
+        List<SentenceState> roots = Sugar.list(null == seed ? emptySentence : seed);
+        if (null != resumed) {
+            search.printedOut.add(resumed.printed);
+            roots = resumed.frontier;
+        }
+        search.pending.addAll(roots);
+        ForkJoinPool pool = new ForkJoinPool(setup.dfsThreads);
+        try {
+            pool.invoke(search.expandAll(roots));
+        } finally {
+            pool.shutdown();
+        }
+        search.dfsBatch.report(metrics, setup.metricsBatch, true);
+        if (null != setup.checkpoint) {
+            search.storeCheckpoint();
+        }
+        return search.printedOut.sum();
+    }
+
+    // DFS where each opened node is a fork-join task; subtrees are distributed over per-worker deques by work stealing,
+    // while the closed list, the cell graph filter, and the time limit are shared by all workers
+    private class ParallelDFS {
+
+        private final long start = System.nanoTime();
+        private final List<Clause> clauses;
+        private final CellGraphFilter cellGraphResolver;
+        private final List<SingleFilter<SentenceState>> sentenceFilters;
+        private final List<JoiningFilter> joiningFilters;
+        private final List<SingleFilter<SentenceState>> hideOnlyFilters;
+        private final SentenceState seed;
+        private final ClausesGenerator clausesGenerator;
+        private final CanonicalSet closedList;
+        private final LongAdder printedOut = new LongAdder();
+        private final AtomicBoolean outOfTime = new AtomicBoolean(false);
+        private final Object printLock = new Object();
+        // the frontier for checkpoints; opening of a node (holding the read lock) is atomic with respect to a checkpoint
+        private final Set<SentenceState> pending = ConcurrentHashMap.newKeySet();
+        private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+        private final AtomicLong lastCheckpoint = new AtomicLong(System.nanoTime());
+        private final DfsBatch dfsBatch = new DfsBatch();
+
+        private ParallelDFS(List<Clause> clauses, CellGraphFilter cellGraphResolver, List<SingleFilter<SentenceState>> sentenceFilters,
+                            List<JoiningFilter> joiningFilters, List<SingleFilter<SentenceState>> hideOnlyFilters, SentenceState seed,
+                            ClausesGenerator clausesGenerator, CanonicalSet closedList) {
+            this.clauses = clauses;
+            this.cellGraphResolver = cellGraphResolver;
+            this.sentenceFilters = sentenceFilters;
+            this.joiningFilters = joiningFilters;
+            this.hideOnlyFilters = hideOnlyFilters;
+            this.seed = seed;
+            this.clausesGenerator = clausesGenerator;
+            this.closedList = closedList;
+        }
+
+        private boolean shouldStop() {
+            if (outOfTime.get()) {
+                return true;
+            }
+            if (shouldEnd()) {
+                outOfTime.set(true);
+                return true;
+            }
+            return false;
+        }
+
+        // returns children that have not been seen so far, or null if the time is up
+        private List<SentenceState> open(SentenceState node) {
+            // parallel streams started within a task run in the same pool, so a node with many children is split as well
+            long generationStart = System.nanoTime();
+            List<SentenceState> children = connect(node, clauses, joiningFilters)
+                    .filter(sentence -> verified(sentence, sentenceFilters)).toList();
+            int allChildren = children.size();
+            long pruningStart = System.nanoTime();
+            children = children.stream().filter(sentence -> closedList.add(sentence.getUltraCannonic())).toList();
+            int afterPruning = children.size();
+            long filteringStart = System.nanoTime();
+
+            if (shouldStop()) {
+                children.forEach(sentence -> closedList.remove(sentence.getUltraCannonic())); // the node stays pending
+                return null;
+            }
+
+            List<SentenceState> unseen = children;
+            children = fillInCellGraphs(children, cellGraphResolver);
+            Set<SentenceState> hide = ConcurrentHashMap.newKeySet();
+            children.stream()
+                    .filter(sentence -> !hideOnlyFilters.stream().allMatch(f -> f.test(sentence)))
+                    .forEach(hide::add);
+
+            if (shouldStop()) { // the cell graph filter is untouched so far
+                unseen.forEach(sentence -> closedList.remove(sentence.getUltraCannonic()));
+                return null;
+            }
+            // from now on, the node is finished even past the deadline, since its children are known to the cell graph filter
+            resolveCellGraphHiding(children, hide, cellGraphResolver, clausesGenerator);
+
+            int printedChildren = children.size() - hide.size();
+            List<String> printed = children.stream()
+                    .filter(sentence -> !hide.contains(sentence))
+                    .map(SentenceState::getUltraCannonic)
+                    .sorted().toList();
+            long printingStart = System.nanoTime();
+            synchronized (printLock) { // keeps the block of a node together
+                printedOut.add(printedChildren);
+                printed.forEach(SentenceFinder.this::printCandidate);
+                printComment("opened " + printedChildren + " (" + children.size() + " / " + afterPruning + " / " + allChildren +
+                        ") [" + printedOut.sum() + "] in " + timeToNowInSeconds(start) + "\t" + node.getUltraCannonic());
+            }
+            dfsBatch.add(allChildren, afterPruning, hide.size(), printedChildren, pruningStart - generationStart,
+                    filteringStart - pruningStart, printingStart - filteringStart, System.nanoTime() - printingStart);
+            dfsBatch.report(metrics, setup.metricsBatch, false);
+
+            for (SentenceState sentence : children) {
+                sentence.freeMemory();
+            }
+            node.freeMemory();
+            pending.addAll(children);
+            pending.remove(node);
+            return children;
+        }
+
+        private ForkJoinTask<?> expandAll(List<SentenceState> nodes) {
+            return ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(nodes.stream().map(Expand::new).toList()));
+        }
+
+        private void checkpointIfDue() {
+            long last = lastCheckpoint.get();
+            if (null == setup.checkpoint || !isCheckpointDue(last) || !lastCheckpoint.compareAndSet(last, System.nanoTime())) {
+                return;
+            }
+            checkpointLock.writeLock().lock();
+            try {
+                storeCheckpoint();
+            } finally {
+                checkpointLock.writeLock().unlock();
+            }
+            lastCheckpoint.set(System.nanoTime());
+        }
+
+        private void storeCheckpoint() {
+            storeDfsCheckpoint(clauses, seed, pending, closedList, printedOut.sum(), cellGraphResolver);
+        }
+
+        private class Expand extends RecursiveAction {
+
+            private final SentenceState node;
+
+            private Expand(SentenceState node) {
+                this.node = node;
+            }
+
+            @Override
+            protected void compute() {
+                if (outOfTime.get()) {
+                    return;
+                }
+                List<SentenceState> children;
+                checkpointLock.readLock().lock();
+                try {
+                    children = open(node);
+                } finally {
+                    checkpointLock.readLock().unlock();
+                }
+                checkpointIfDue();
+                if (null == children || children.isEmpty()) {
+                    return;
+                }
+                // forked children go to this worker's deque; idle workers steal the oldest, i.e. the largest, subtrees
+                invokeAll(children.stream().map(Expand::new).toList());
+            }
+        }
+    }
+
     public Pair<List<Clause>, ClausesGenerator> initForQueries() {
         long startTime = System.nanoTime();
         printComment("there are " + this.quantifiers.size() + " quantifiers and " + this.literals.size() + " literals");
@@ -422,6 +825,14 @@ public class SentenceFinder {
         if (setup.maxOverallLiterals > 0) {
             connectionFilters.add(clausesGen.maxOverallLiterals(setup.maxOverallLiterals));
         }
+        if (setup.orderedExtension) {
+            // a prefix of a sentence in the order has to pass the filters as well
+            if (!BFS.equals(setup.mode) || setup.decomposableComponents || setup.quantifiersReducibility || setup.canonicalAugmentation || (null != setup.seed && !setup.seed.isEmpty())) {
+                printComment("ordered extension needs BFS with joining filters which pass for any subset of a passing sentence (i.e. no decomposable components nor quantifiers reducibility), no seed, and no canonical augmentation, so clauses are joined in any order");
+            } else {
+                connectionFilters.add(clausesGen.orderedExtension(setup));
+            }
+        }
         if (setup.decomposableComponents) {
             connectionFilters.add(clausesGen.connectedComponents());
         }
@@ -440,6 +851,44 @@ public class SentenceFinder {
         return connectionFilters;
     }
 
+    // decomposable filters are replaced by bitsets over the basis (if they fit into a quarter of the heap); returns the rest
+    private List<JoiningFilter> precomputePairwise(List<Clause> basis, List<JoiningFilter> filters) {
+        if (!setup.compatibilityBitsets) {
+            return filters;
+        }
+        long bytes = ClauseCompatibility.estimateBytes(basis.size(), filters);
+        if (bytes > Runtime.getRuntime().maxMemory() / 4) {
+            printComment("compatibility bitsets would take " + bytes + " bytes, so the joining filters are evaluated one by one");
+            return filters;
+        }
+        this.compatibility = ClauseCompatibility.create(basis, filters);
+        if (null == compatibility) {
+            return filters;
+        }
+        printComment("joining filters " + makeString(filters.stream().filter(filter -> JoiningFilter.Decomposition.NONE != filter.getDecomposition()).toList())
+                + " are precomputed into compatibility bitsets over " + basis.size() + " clauses");
+        return compatibility.getResidualFilters();
+    }
+
+    // a chain of filters in the order learned at runtime in place of the filters themselves
+    private List<JoiningFilter> adaptiveJoining(List<JoiningFilter> filters) {
+        return setup.adaptiveFilters && filters.size() > 1 ? Sugar.list(new JoiningFilterChain(filters)) : filters;
+    }
+
+    private <T> List<SingleFilter<T>> adaptive(List<SingleFilter<T>> filters) {
+        return setup.adaptiveFilters && filters.size() > 1 ? Sugar.list(new SingleFilterChain<>(filters)) : filters;
+    }
+
+    private void printFilterOrder(String kind, List<?> filters) {
+        for (Object filter : filters) {
+            if (filter instanceof JoiningFilterChain chain) {
+                printComment("adaptive order of " + kind + " filters: " + chain.getOrder().describe());
+            } else if (filter instanceof SingleFilterChain<?> chain) {
+                printComment("adaptive order of " + kind + " filters: " + chain.getOrder().describe());
+            }
+        }
+    }
+
     public List<SingleFilter<SentenceState>> getSentenceFilters(ClausesGenerator clausesGen, SentenceSetup setup) {
         List<SingleFilter<SentenceState>> sentenceFilters = Sugar.list();
         if (setup.reflexiveAtoms && DFS.equals(setup.mode)) { // TODO is this safe in this mode?
@@ -455,10 +904,22 @@ public class SentenceFinder {
     private long runConnection(MultiList<Integer, SentenceState> sentences, CellGraphFilter cellGraphFilter,
                                MultiList<Integer, Clause> clausesByLength, List<SingleFilter<SentenceState>> sentenceFilters,
                                List<JoiningFilter> connectionFilters, List<SingleFilter<SentenceState>> hideOnlyFilters,
-                               int startLevel, SentenceState seed, ClausesGenerator clausesGenerator) {
+                               int startLevel, SentenceState seed, ClausesGenerator clausesGenerator, LayerStore layerStore,
+                               List<Clause> basis) {
         printComment("going to connect clauses with connection filters: " + makeString(connectionFilters));
         printComment("going to connect clauses with sentence filters: " + makeString(sentenceFilters));
         printComment("going to connect clauses with hide filters: " + makeString(hideOnlyFilters));
+        if (setup.chunkSize > 0) {
+            printComment("layers are streamed in chunks of at most " + setup.chunkSize + " candidates");
+        }
+        if (setup.sortRun > 0) {
+            printComment("the output of a layer is sorted externally in runs of at most " + setup.sortRun + " lines");
+        }
+        if (null != layerStore) {
+            printComment(layerStore.isMapped() ? "finished layers are stored in memory-mapped files in " + setup.layerStore
+                    : "finished layers are kept as compact arrays of clause ids");
+        }
+        int seedClauses = null == seed ? 0 : seed.clauses.size();
         StringBuilder info = new StringBuilder("info: ");
         /*StringBuilder isoDistribution = new StringBuilder("iso: ");
         StringBuilder cellDistribution = new StringBuilder("cells: ");
@@ -469,148 +930,541 @@ public class SentenceFinder {
         for (int layerToFree = 1; layerToFree < startLevel - setup.maxLiteralsPerClause; layerToFree++) { // free memory from search continuing
             sentences.get(layerToFree).clear();
         }
-        Triple<List<SentenceState>, String, Counters<Integer>> isoTriple = new Triple<>(null, "", new Counters<>());
+        if (null != augmentation) {
+            printComment("children are generated by canonical augmentation only");
+            for (int layer = Math.max(1, startLevel - setup.maxLiteralsPerClause); layer < startLevel; layer++) {
+                augmentation.retainIfMissing(layer, sentences.get(layer));
+            }
+        }
 
         for (int numberOfLiterals = startLevel; numberOfLiterals <= setup.maxOverallLiterals; numberOfLiterals++) {
             // dev
             List<Clause> cls = Sugar.list();
             clausesByLength.values().forEach(cls::addAll);
-            List<SentenceState> s = Sugar.list();
-            sentences.values().forEach(s::addAll);
             List<Clause> cg = Sugar.list();
             cellGraphFilter.values().forEach(cg::addAll);
             printComment("stats " + numberOfLiterals
                     + "\tc " + clausesToHistogram(cls)
-                    + "\ts " + sentencesToHistogram(s)
+                    + "\ts " + sentencesToHistogram(sentences)
                     + "\tg" + clausesToHistogram(cg));
             /// end dev
 
             // generating
-            long layerStart = System.nanoTime();
             printComment("starting to generate all clauses of length exactly " + numberOfLiterals + " literals");
-            //List<SentenceState> layerSentences = connectToSize(numberOfLiterals, sentences, clausesByLength, connectionFilters);
-            List<SentenceState> layerSentences = connectToSizeParallel(numberOfLiterals, sentences, clausesByLength, connectionFilters, seed, clausesGenerator);
-            Long generation = timeToNowInSeconds(layerStart);
-            printComment("there are " + layerSentences.size() + " sentences generated within " + generation);
-            int rawSize = layerSentences.size();
-            if (shouldEnd(start)) {
+            relieveMemory(numberOfLiterals, true, sentences, layerStore, seedClauses);
+            Layer layer = new Layer(numberOfLiterals, chunkSize > 0, null == layerStore ? null
+                    : layerStore.writer(numberOfLiterals, setup.maxClauses > 0 ? Math.min(setup.maxClauses, numberOfLiterals + seedClauses) : numberOfLiterals + seedClauses));
+            if (!sentences.get(numberOfLiterals).isEmpty()) {
+                printComment("continuing the partial layer with " + sentences.get(numberOfLiterals).size() + " sentences from the previous search");
+                layer.resume(sentences);
+            }
+            Supplier<List<SentenceState>> candidates = chunkSize > 0
+                    ? chunkedCandidates(numberOfLiterals, sentences, clausesByLength, connectionFilters, seed, clausesGenerator)
+                    : wholeLayerCandidates(numberOfLiterals, sentences, clausesByLength, connectionFilters, seed, clausesGenerator);
+            boolean ended = false;
+            while (!ended) {
+                long generationStart = System.nanoTime();
+                List<SentenceState> chunk = candidates.get();
+                layer.generation += System.nanoTime() - generationStart;
+                if (null == chunk) {
+                    break;
+                }
+                ended = !processChunk(chunk, layer, sentences, cellGraphFilter, sentenceFilters, hideOnlyFilters, clausesGenerator);
+                count += layer.lastPrinted;
+                relieveMemory(numberOfLiterals, layer.streaming, sentences, layerStore, seedClauses);
+            }
+            layer.printSorted();
+            layer.forget(sentences);
+            if (ended) {
+                printComment("layer " + numberOfLiterals + " has been cut by the time limit with " + layer.printed + " sentences printed");
+                if (null != setup.checkpoint) { // the next search continues with this very layer
+                    long checkpointStart = System.nanoTime();
+                    OutputSink.syncAll();
+                    Checkpoint.storeBfs(Paths.get(setup.checkpoint), setup, basis, seed, sentences, cellGraphFilter, numberOfLiterals);
+                    printComment("checkpoint of the partial layer stored within " + timeToNowInSeconds(checkpointStart));
+                }
                 break;
             }
+            if (layer.streaming) {
+                printComment("there are " + layer.raw + " sentences generated within " + toSeconds(layer.generation));
+                printComment("there are " + layer.afterPruning + " sentence after pruning done within " + toSeconds(layer.pruning));
+                printComment("there are " + layer.printed + " sentence after filtering within " + toSeconds(layer.filtering));
+                printComment("there were " + layer.afterPruning + " after pruning from which " + layer.hiddenByFilters + " were hidden by hiding filters and exactly " + layer.hiddenByCellGraphs + " were hidden using cell graph pruning and so " + layer.printed + " left");
+            }
 
             if (debug) {
-                debugOutput("raw", layerSentences);
+                clausesGenerator.flushLogger();
             }
 
-            // pruning (iso, contradictions,...)
-            long pruningStart = System.nanoTime();
-            layerSentences = layerSentences.stream()
-                    .parallel()
-                    .filter(sentence -> sentenceFilters.stream().allMatch(filter -> filter.test(sentence))).toList();
-            if (setup.negations && setup.isomorphicSentences && setup.permutingArguments && setup.lexicographicalMatching) {
-                ConcurrentHashMap.KeySetView<String, Boolean> iso = ConcurrentHashMap.newKeySet();
-                List<SentenceState> prunedSentences = layerSentences.parallelStream()
-                        .filter(sentence -> iso.add(sentence.getUltraCannonic()))
-                        .collect(Collectors.toList());
-                isoTriple = new Triple<>(prunedSentences, "", new Counters<>());
-            } else { // lexicographical filtering is possible only when negations, isomorphic sentences, and permutations are all on
-                isoTriple = isoPruneParallel(layerSentences, clausesGenerator);
-            }
-            layerSentences = isoTriple.getR();
-
-            Long pruning = timeToNowInSeconds(pruningStart);
-            int afterPruneCount = layerSentences.size();
-            printComment("there are " + layerSentences.size() + " sentence after pruning done within " + pruning);
-            sentences.putAll(numberOfLiterals, layerSentences);
-            if (shouldEnd(start)) {
+            int layerToFree = numberOfLiterals - setup.maxLiteralsPerClause;
+            if (layerToFree > 0 && sentences.containsKey(layerToFree)) {
+                sentences.get(layerToFree).clear();
+            }
+            if (layerToFree > 0 && null != augmentation) {
+                augmentation.forget(layerToFree);
+            }
+
+            Long generation = toSeconds(layer.generation);
+            Long pruning = toSeconds(layer.pruning);
+            Long filtering = toSeconds(layer.filtering);
+            Long printing = toSeconds(layer.printing);
+            long layerTime = generation + pruning + filtering + printing;
+            printComment("finished layer with exactly " + numberOfLiterals + " literals, overall time was " + (layerTime));
+            info.append(numberOfLiterals).append(": ").append(layer.printed)
+                    .append(" (").append(layer.afterPruning).append(", ").append(layer.raw).append(")")
+                    .append(" in ").append(layerTime)
+                    .append(" [ ").append(generation).append(", ").append(pruning).append(", ")
+                    .append(filtering).append(", ").append(printing).append("]; ");
+            printComment(info.toString());
+            metrics.record("bfs")
+                    .put("layer", numberOfLiterals)
+                    .put("raw", layer.raw)
+                    .put("afterPruning", layer.afterPruning)
+                    .put("hiddenByFilters", layer.hiddenByFilters)
+                    .put("hiddenByCellGraphs", layer.hiddenByCellGraphs)
+                    .put("printed", layer.printed)
+                    .put("chunks", layer.chunks)
+                    .putMillis("generation", layer.generation)
+                    .putMillis("pruning", layer.pruning)
+                    .putMillis("filtering", layer.filtering)
+                    .putMillis("printing", layer.printing)
+                    .write();
+
+            if (null != setup.checkpoint) {
+                long checkpointStart = System.nanoTime();
+                OutputSink.syncAll(); // the output is never behind a checkpoint
+                Checkpoint.storeBfs(Paths.get(setup.checkpoint), setup, basis, seed, sentences, cellGraphFilter, numberOfLiterals + 1);
+                printComment("checkpoint stored within " + timeToNowInSeconds(checkpointStart));
+            }
+
+            /*
+            isoDistribution.append(" ").append(numberOfLiterals).append(": [").append(toDistribution(layer.isoHandler)).append("]");
+            printComment(isoDistribution.toString());
+            cellDistribution.append(" ").append(numberOfLiterals).append(": [").append(toDistribution(cellGraphFilter)).append("]");
+            printComment(cellDistribution.toString());
+            hashDistributions.append(" ").append(numberOfLiterals)
+                    .append(": [").append(histogramToString(toCounter(layer.isoHandler.entrySet()))).append("]")
+                    .append(" [").append(histogramToString(toCounter(cellGraphFilter.entrySet()))).append("]");
+            printComment(hashDistributions.toString());
+            */
+            if (shouldEnd()) {
                 break;
             }
+        }
+        return count;
+    }
 
-            if (debug) {
-                debugOutput("after-pruning", layerSentences);
+    // A single worker of the distributed BFS. A sentence is owned by the worker given by the hash of its ultra-canonical
+    // form, which keeps the sentence for joins and prunes its isomorphic copies. A cell graph is owned by the worker given
+    // by its isomorphism-invariant hash, which holds the cell graphs of previous layers for its partition. Thus, each layer
+    // needs two exchanges (or one without cell graphs) and the result is the same as in a single process.
+    private long runWorker(CellGraphFilter cellGraphFilter, MultiList<Integer, Clause> clausesByLength,
+                           List<SingleFilter<SentenceState>> sentenceFilters, List<JoiningFilter> connectionFilters,
+                           List<SingleFilter<SentenceState>> hideOnlyFilters, SentenceState seed, ClausesGenerator clausesGenerator,
+                           List<Clause> basis) {
+        Exchange exchange = new Exchange(Paths.get(setup.workDir), setup.workers, setup.workerId);
+        Clause[] byId = new Clause[basis.size()];
+        basis.forEach(clause -> byId[clause.getId()] = clause);
+        LayerStore layerStore = LayerStore.create(null, basis, setup); // compact layers only, the exchange is on disk already
+        MultiList<Integer, SentenceState> sentences = new MultiList<>();
+        long count = 0l;
+        for (int numberOfLiterals = 1; numberOfLiterals <= setup.maxOverallLiterals; numberOfLiterals++) {
+            LayerReport report = new LayerReport();
+            long generationStart = System.nanoTime();
+            List<SentenceState> candidates = connectParents(numberOfLiterals, sentences, clausesByLength, connectionFilters);
+            if (0 == setup.workerId) {
+                candidates.addAll(connectSingleClauses(numberOfLiterals, clausesByLength, connectionFilters, seed, clausesGenerator));
             }
+            report.generation = System.nanoTime() - generationStart;
+            report.raw = candidates.size();
 
+            // pruning; the local one only lowers the amount of exchanged sentences
+            long pruningStart = System.nanoTime();
+            CanonicalSet sent = CanonicalSet.create(setup);
+            List<List<int[]>> outgoing = partition(candidates.parallelStream()
+                    .filter(sentence -> sentenceFilters.stream().allMatch(filter -> filter.test(sentence)))
+                    .filter(sentence -> sent.add(sentence.getUltraCannonic()))
+                    .toList(), sentence -> sentence.getUltraCannonic().hashCode(), this::toIds);
+            candidates = null;
+            sent.clear();
+            CanonicalSet canonicals = CanonicalSet.create(setup);
+            List<SentenceState> layerSentences = exchange.allToAll(numberOfLiterals + ".sentences", outgoing, Exchange::writeIds, Exchange::readIds)
+                    .parallelStream()
+                    .map(ids -> fromIds(ids, byId))
+                    .filter(sentence -> canonicals.add(sentence.getUltraCannonic()))
+                    .collect(Collectors.toList());
+            canonicals.clear();
+            report.pruning = System.nanoTime() - pruningStart;
+            report.afterPruning = layerSentences.size();
+            sentences.putAll(numberOfLiterals, layerSentences);
 
-            // hiding (e.g. reflexive atoms), cell-graph,...
+            // hiding
             long filteringStart = System.nanoTime();
             Set<SentenceState> hide = ConcurrentHashMap.newKeySet();
             layerSentences.parallelStream()
                     .filter(sentence -> !hideOnlyFilters.stream().allMatch(f -> f.test(sentence)))
                     .forEach(hide::add);
+            report.hiddenByFilters = hide.size();
+            if (usesCellGraphs()) {
+                cellGraphFilter.fillInCellGraphs(dropComputed(layerSentences, cellGraphFilter));
+                List<List<CellGraphRecord>> cellGraphs = partition(layerSentences, cellGraphFilter::cellGraphHash,
+                        sentence -> new CellGraphRecord(toIds(sentence), hide.contains(sentence), cellGraphFilter.cellGraphString(sentence)));
+                hide.clear();
+                layerSentences = Sugar.list();
+                for (CellGraphRecord record : exchange.allToAll(numberOfLiterals + ".cellGraphs", cellGraphs, CellGraphRecord::write, CellGraphRecord::read)) {
+                    SentenceState sentence = fromIds(record.ids, byId);
+                    cellGraphFilter.setUpRedisOutput(sentence, record.cellGraph);
+                    if (record.hidden) {
+                        hide.add(sentence);
+                    }
+                    layerSentences.add(sentence);
+                }
+                int hiddenByFilters = hide.size();
+                if (!layerSentences.isEmpty()) {
+                    hideByCellGraphs(layerSentences, hide, cellGraphFilter, clausesGenerator);
+                }
+                report.hiddenByCellGraphs = hide.size() - hiddenByFilters;
+            }
+            List<String> printed = layerSentences.stream()
+                    .filter(sentence -> !hide.contains(sentence))
+                    .map(SentenceState::getUltraCannonic)
+                    .sorted().toList();
+            report.filtering = System.nanoTime() - filteringStart;
+            report.printed = printed.size();
+            count += printed.size();
+            printComment("layer " + numberOfLiterals + ": " + report.printed + " (" + report.afterPruning + ", " + report.raw + ")");
+            exchange.finishLayer(numberOfLiterals, report, printed);
+
+            for (SentenceState sentence : layerSentences) {
+                sentence.freeMemory();
+            }
+            if (null == layerStore) {
+                sentences.get(numberOfLiterals).forEach(SentenceState::freeMemory);
+            } else {
+                IdLayer.Writer writer = layerStore.writer(numberOfLiterals, numberOfLiterals);
+                writer.append(sentences.get(numberOfLiterals));
+                sentences.set(numberOfLiterals, writer.finish());
+            }
+            int layerToFree = numberOfLiterals - setup.maxLiteralsPerClause;
+            if (layerToFree > 0 && sentences.containsKey(layerToFree)) {
+                sentences.get(layerToFree).clear();
+            }
+            if (!exchange.awaitNext(numberOfLiterals)) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private <T> List<List<T>> partition(List<SentenceState> sentences, ToIntFunction<SentenceState> hash, Function<SentenceState, T> record) {
+        List<List<T>> retVal = Sugar.list();
+        for (int worker = 0; worker < setup.workers; worker++) {
+            retVal.add(Sugar.list());
+        }
+        for (SentenceState sentence : sentences) {
+            retVal.get(Math.floorMod(hash.applyAsInt(sentence), setup.workers)).add(record.apply(sentence));
+        }
+        return retVal;
+    }
+
+    private int[] toIds(SentenceState sentence) {
+        return sentence.clauses.stream().mapToInt(Clause::getId).toArray();
+    }
+
+    private SentenceState fromIds(int[] ids, Clause[] byId) {
+        List<Clause> clauses = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            clauses.add(byId[id]);
+        }
+        return new SentenceState(clauses, setup);
+    }
+
+    // a sentence sent to the owner of its cell graph
+    private static class CellGraphRecord {
+        private final int[] ids;
+        private final boolean hidden;
+        private final String cellGraph;
+
+        private CellGraphRecord(int[] ids, boolean hidden, String cellGraph) {
+            this.ids = ids;
+            this.hidden = hidden;
+            this.cellGraph = cellGraph;
+        }
+
+        private static void write(DataOutputStream out, CellGraphRecord record) throws IOException {
+            Exchange.writeIds(out, record.ids);
+            out.writeBoolean(record.hidden);
+            Checkpoint.writeString(out, record.cellGraph);
+        }
 
-            int hideBeforeCallGraph = hide.size();
+        private static CellGraphRecord read(DataInputStream in) throws IOException {
+            return new CellGraphRecord(Exchange.readIds(in), in.readBoolean(), Checkpoint.readString(in));
+        }
+    }
+
+    // pushes one chunk of raw candidates through pruning, hiding, cell-graph resolution and printing; returns false
+    // when the time limit has been reached, in which case only the part of the chunk verified by then is kept and printed
+    private boolean processChunk(List<SentenceState> layerSentences, Layer layer, MultiList<Integer, SentenceState> sentences,
+                                 CellGraphFilter cellGraphFilter, List<SingleFilter<SentenceState>> sentenceFilters,
+                                 List<SingleFilter<SentenceState>> hideOnlyFilters, ClausesGenerator clausesGenerator) {
+        layer.lastPrinted = 0;
+        int rawSize = layerSentences.size();
+        layer.raw += rawSize;
+        if (!layer.streaming) {
+            printComment("there are " + rawSize + " sentences generated within " + toSeconds(layer.generation));
+        }
+
+        if (debug) {
+            debugOutput("raw", layerSentences);
+        }
 
-            resolveCellGraphHiding(layerSentences, hide, cellGraphFilter, clausesGenerator);
+        // pruning (iso, contradictions,...)
+        long pruningStart = System.nanoTime();
+        layerSentences = layerSentences.stream()
+                .parallel()
+                .filter(sentence -> verified(sentence, sentenceFilters)).toList();
+        if (null != isoBenchmark && !layer.benchmarked) { // on the first chunk only, and aside from the pruning time
+            long benchmarkStart = System.nanoTime();
+            isoBenchmark.run(layer.numberOfLiterals, layerSentences);
+            layer.benchmarked = true;
+            pruningStart += System.nanoTime() - benchmarkStart;
+        }
+        if (null != layer.canonicals) {
+            layerSentences = layerSentences.parallelStream()
+                    .filter(sentence -> !shouldEnd() && layer.canonicals.add(sentence.getUltraCannonic()))
+                    .collect(Collectors.toList());
+        } else { // lexicographical filtering is possible only when negations, isomorphic sentences, and permutations are all on
+            layerSentences = isoPruneParallel(layerSentences, layer.isoHandler, layer.literalsCache, clausesGenerator);
+        }
+        long pruning = System.nanoTime() - pruningStart;
+        layer.pruning += pruning;
+        int afterPruneCount = layerSentences.size();
+        layer.afterPruning += afterPruneCount;
+        if (!layer.streaming) {
+            printComment("there are " + afterPruneCount + " sentence after pruning done within " + toSeconds(pruning));
+        }
+        if (debug) {
+            debugOutput("after-pruning", layerSentences);
+        }
+
+
+        // hiding (e.g. reflexive atoms), cell-graph,...
+        long filteringStart = System.nanoTime();
+        layerSentences = fillInCellGraphs(layerSentences, cellGraphFilter);
+        Set<SentenceState> hide = ConcurrentHashMap.newKeySet();
+        layerSentences.parallelStream()
+                .filter(sentence -> !hideOnlyFilters.stream().allMatch(f -> f.test(sentence)))
+                .forEach(hide::add);
+
+        int hideBeforeCallGraph = hide.size();
+
+        resolveCellGraphHiding(layerSentences, hide, cellGraphFilter, clausesGenerator);
 //            if (setup.collectCellGraphs) { // this is just a dev tool
 //                showSameCellGraphs(); // TODO update this
 //            }
+        // the layer keeps only sentences that have been printed or hidden, so that it may be continued from a checkpoint
+        if (null == layer.writer) {
+            sentences.putAll(layer.numberOfLiterals, layerSentences);
+        } else {
+            layer.writer.append(layerSentences);
+        }
 
 
-            Long filtering = timeToNowInSeconds(filteringStart);
-            int displaySize = layerSentences.size() - hide.size();
-            printComment("there are " + (displaySize) + " sentence after filtering within " + filtering);
+        long filtering = System.nanoTime() - filteringStart;
+        layer.filtering += filtering;
+        int displaySize = layerSentences.size() - hide.size();
+        layer.hiddenByFilters += hideBeforeCallGraph;
+        layer.hiddenByCellGraphs += hide.size() - hideBeforeCallGraph;
+        layer.printed += displaySize;
+        if (!layer.streaming) {
+            printComment("there are " + (displaySize) + " sentence after filtering within " + toSeconds(filtering));
             printComment("there were " + afterPruneCount + " after pruning from which " + hideBeforeCallGraph + " were hidden by hiding filters and exactly " + (hide.size() - hideBeforeCallGraph) + " were hidden using cell graph pruning and so " + displaySize + " left");
-            if (shouldEnd(start)) {
-                break;
-            }
+        }
 
-            if (debug) {
-                debugOutput("after-filtering", layerSentences.stream().filter(sentence -> !hide.contains(sentence)).toList());
-            }
+        if (debug) {
+            debugOutput("after-filtering", layerSentences.stream().filter(sentence -> !hide.contains(sentence)).toList());
+        }
 
 
-            count += layerSentences.size() - hide.size();
+        layer.lastPrinted = displaySize;
 
-            // printing
-            long printingStart = System.nanoTime();
-            layerSentences.stream()
-                    .filter(sentence -> !hide.contains(sentence))
-                    .map(SentenceState::getUltraCannonic)
+        // printing
+        long printingStart = System.nanoTime();
+        List<String> printed = layerSentences.parallelStream()
+                .filter(sentence -> !hide.contains(sentence))
+                .map(SentenceState::getUltraCannonic)
 //                    .map(a -> a.getUltraCannonic() + "\t;\t" + (null == a.getCanonicalCellGraph() ? a.getCellGraph() : a.getCanonicalCellGraph()))
-                    .sorted().forEach(this::printCandidate);
-            Long printing = timeToNowInSeconds(printingStart);
-            if (this.setup.statesStoring) {
-                layerSentences.stream().sorted(Comparator.comparing(SentenceState::getUltraCannonic))
-                        .forEach(sentence -> printSerialization(sentenceToSerialization(sentence), false));
-            }
-
-            if (debug) {
-                clausesGenerator.flushLogger();
+                .toList();
+        if (null != layer.output) { // printed at the end of the layer
+            layer.output.addAll(printed);
+        } else {
+            OutputSink.printSorted(printed);
+        }
+        layer.printing += System.nanoTime() - printingStart;
+        if (null != layer.serializations) {
+            for (SentenceState sentence : layerSentences) {
+                layer.serializations.add(sentence.getUltraCannonic(), sentenceToSerialization(sentence));
             }
+        } else if (this.setup.statesStoring) {
+            layerSentences.stream().sorted(Comparator.comparing(SentenceState::getUltraCannonic))
+                    .forEach(sentence -> printSerialization(sentenceToSerialization(sentence), false));
+        }
+        if (layer.streaming) {
+            layer.chunks++;
+            printComment("chunk " + layer.chunks + " of layer " + layer.numberOfLiterals + ": " + displaySize + " (" + afterPruneCount + ", " + rawSize + ")");
+        }
 
-            // free memory
+        // free memory; the iso-handler needs its witnesses untouched till the end of the layer
+        if (null != layer.canonicals) {
             for (SentenceState sentence : layerSentences) {
                 sentence.freeMemory();
             }
-            int layerToFree = numberOfLiterals - setup.maxLiteralsPerClause;
-            if (layerToFree > 0 && sentences.containsKey(layerToFree)) {
-                sentences.get(layerToFree).clear();
+        }
+        return !shouldEnd();
+    }
+
+    // Called at safe points of the BFS, i.e. between chunks and layers; does nothing unless the memory governor has
+    // signalled pressure since. Every signal escalates the relief: the memo of canonical forms is dropped (already by the
+    // governor), retained sentences forget all they can recompute, and layers are streamed in chunks, halved with each
+    // further signal; from the third one on, retained layers are spilled into memory-mapped files. The chunk size applies
+    // to the rest of the layer being generated if it is streamed already (or has not started yet), otherwise to the next.
+    private void relieveMemory(int numberOfLiterals, boolean streaming, MultiList<Integer, SentenceState> sentences, LayerStore layerStore, int seedClauses) {
+        if (0 == memory.takeSignals()) {
+            return;
+        }
+        int level = memory.getLevel();
+        List<String> actions = Sugar.list("canonical memo dropped"); // literals and clauses stay interned, they are linked to each other
+        int freed = 0;
+        for (Integer retained : sentences.keySet()) {
+            if (retained < numberOfLiterals && !(sentences.get(retained) instanceof IdLayer)) { // the current layer is freed as it goes
+                sentences.get(retained).forEach(SentenceState::freeMemory);
+                freed += sentences.get(retained).size();
+            }
+        }
+        actions.add(freed + " retained sentences freed");
+        chunkSize = chunkSize > 0 ? Math.max(MIN_CHUNK_SIZE, chunkSize / 2) : FIRST_CHUNK_SIZE;
+        actions.add("chunks of at most " + chunkSize + " candidates" + (streaming ? "" : " from the next layer on"));
+        int spilled = 0;
+        if (level >= 3 && null != layerStore && !layerStore.isMapped()) { // compact layers are spilled, mapped ones are on disk already
+            for (Integer retained : Sugar.listFromCollections(sentences.keySet())) {
+                List<SentenceState> kept = sentences.get(retained);
+                if (retained < numberOfLiterals && !kept.isEmpty() && !(kept instanceof MappedLayer)) {
+                    int maxClauses = setup.maxClauses > 0 ? Math.min(setup.maxClauses, retained + seedClauses) : retained + seedClauses;
+                    sentences.set(retained, spillStore(layerStore).copy(kept, retained, maxClauses));
+                    spilled++;
+                }
             }
+            actions.add(spilled + " retained layers spilled");
+        }
+        printComment("memory pressure (" + memory.describePressure() + "), relief " + level + ": " + String.join(", ", actions));
+        metrics.record("memory")
+                .put("layer", numberOfLiterals)
+                .put("level", level)
+                .put("freed", freed)
+                .put("chunkSize", chunkSize)
+                .put("spilled", spilled)
+                .write();
+    }
 
+    private LayerStore spillStore(LayerStore layerStore) {
+        if (null == spillStore) {
+            try {
+                Path base = Paths.get(null == setup.workDir ? System.getProperty("java.io.tmpdir") : setup.workDir);
+                Path directory = Files.createTempDirectory(base, "spilled");
+                directory.toFile().deleteOnExit();
+                spillStore = new LayerStore(directory, Arrays.asList(layerStore.getBasis()), setup);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return spillStore;
+    }
 
-            long layerTime = generation + pruning + filtering + printing;
-            printComment("finished layer with exactly " + numberOfLiterals + " literals, overall time was " + (layerTime));
-            info.append(numberOfLiterals).append(": ").append(displaySize)
-                    .append(" (").append(afterPruneCount).append(", ").append(rawSize).append(")")
-                    .append(" in ").append(layerTime)
-                    .append(" [ ").append(generation).append(", ").append(pruning).append(", ")
-                    .append(filtering).append(", ").append(printing).append("]; ");
-            printComment(info.toString());
+    // book-keeping of a single BFS layer which may be processed in several chunks
+    private class Layer {
+        private final int numberOfLiterals;
+        private final boolean streaming;
+        // exactly one of these is used for iso-pruning; both live through the whole layer so that chunks are pruned against each other
+        private final CanonicalSet canonicals;
+        private final ConcurrentIsoHandler isoHandler;
+        private final LiteralsCache literalsCache;
+        private final IdLayer.Writer writer; // null if the layer is kept as it is
+        // both null unless the output is sorted externally, i.e. over the whole layer
+        private final ExternalSort output;
+        private final ExternalSort serializations;
+        private int raw;
+        private int afterPruning;
+        private int hiddenByFilters;
+        private int hiddenByCellGraphs;
+        private int printed;
+        private int lastPrinted;
+        private int chunks;
+        private boolean benchmarked; // by the iso benchmark
+        private long generation; // all times are in nanoseconds
+        private long pruning;
+        private long filtering;
+        private long printing;
+
+        private Layer(int numberOfLiterals, boolean streaming, IdLayer.Writer writer) {
+            this.numberOfLiterals = numberOfLiterals;
+            this.streaming = streaming;
+            this.writer = writer;
+            Path runs = null == setup.workDir ? null : Paths.get(setup.workDir);
+            this.output = setup.sortRun > 0 ? new ExternalSort(runs, setup.sortRun) : null;
+            this.serializations = setup.sortRun > 0 && setup.statesStoring ? new ExternalSort(runs, setup.sortRun) : null;
+            if (setup.negations && setup.isomorphicSentences && setup.permutingArguments && setup.lexicographicalMatching) {
+                this.canonicals = CanonicalSet.create(setup);
+                this.isoHandler = null;
+                this.literalsCache = null;
+            } else {
+                this.canonicals = null;
+                this.isoHandler = new ConcurrentIsoHandler();
+                this.literalsCache = LiteralsCache.getLayer();
+            }
+        }
 
-            /*
-            isoDistribution.append(" ").append(numberOfLiterals).append(": [").append(isoTriple.getS()).append("]");
-            printComment(isoDistribution.toString());
-            cellDistribution.append(" ").append(numberOfLiterals).append(": [").append(toDistribution(cellGraphFilter)).append("]");
-            printComment(cellDistribution.toString());
-            hashDistributions.append(" ").append(numberOfLiterals)
-                    .append(": [").append(histogramToString(isoTriple.getT())).append("]")
-                    .append(" [").append(histogramToString(toCounter(cellGraphFilter.entrySet()))).append("]");
-            printComment(hashDistributions.toString());
-            */
-            if (shouldEnd(start)) {
-                break;
+        // a layer cut by the time limit; its sentences are neither generated nor printed again
+        private void resume(MultiList<Integer, SentenceState> sentences) {
+            List<SentenceState> kept = sentences.get(numberOfLiterals);
+            if (null != canonicals) {
+                kept.parallelStream().forEach(sentence -> canonicals.add(sentence.getUltraCannonic()));
+            } else {
+                kept.parallelStream().forEach(sentence -> isoHandler.contains(sentence.getICW(literalsCache)));
+            }
+            if (null != writer) { // the writer replaces the layer at its end
+                writer.append(kept);
+            }
+        }
+
+        // prints what has been collected by the external sorts, even if the layer has not been finished
+        private void printSorted() {
+            if (null != output) {
+                long printingStart = System.nanoTime();
+                output.forEachSorted(SentenceFinder.this::printCandidate);
+                printing += System.nanoTime() - printingStart;
+            }
+            if (null != serializations) {
+                serializations.forEachSorted(serialization -> printSerialization(serialization, false));
+            }
+        }
+
+        private void forget(MultiList<Integer, SentenceState> sentences) {
+            if (null != writer) { // the witnesses of the iso-handler are gone together with the handler
+                sentences.set(numberOfLiterals, writer.finish());
+            } else if (null != literalsCache) {
+                for (SentenceState sentence : sentences.get(numberOfLiterals)) {
+                    sentence.freeMemory();
+                }
+            }
+            if (null != literalsCache) {
+                literalsCache.forget();
+            }
+            if (null != augmentation && null != canonicals) { // the canonical forms of the layer are needed to find canonical parents
+                augmentation.retain(numberOfLiterals, canonicals);
+            } else if (null != canonicals) {
+                canonicals.clear();
             }
         }
-        return count;
     }
 
     /*
@@ -696,17 +1550,40 @@ public class SentenceFinder {
         printMessage(candidate, false, System.out);
     }
 
+    // returns the sentences having their cell graphs, i.e. all of them unless the deadline has cut the computation short
+    private List<SentenceState> fillInCellGraphs(List<SentenceState> layerSentences, CellGraphFilter cellGraphFilter) {
+        if (!usesCellGraphs() || layerSentences.isEmpty()) {
+            return layerSentences;
+        }
+        cellGraphFilter.fillInCellGraphs(dropComputed(layerSentences, cellGraphFilter));
+        if (shouldEnd()) {
+            return layerSentences.stream().filter(cellGraphFilter::hasCellGraph).collect(Collectors.toList());
+        }
+        return layerSentences;
+    }
+
+    // expects fillInCellGraphs to be done already
     private void resolveCellGraphHiding(List<SentenceState> layerSentences, Set<SentenceState> hide, CellGraphFilter cellGraphFilter, ClausesGenerator clausesGenerator) {
-        if (null == setup.cellGraph || !setup.computeCellGraph || layerSentences.isEmpty()) {
+        if (!usesCellGraphs() || layerSentences.isEmpty()) {
             return;
         }
-        cellGraphFilter.fillInCellGraphs(dropComputed(layerSentences, cellGraphFilter));
+        hideByCellGraphs(layerSentences, hide, cellGraphFilter, clausesGenerator);
+    }
+
+    private boolean usesCellGraphs() {
+        return null != setup.cellGraph && setup.computeCellGraph;
+    }
 
-        // proceed hide as first! then do the same with layerSentence
-        // firstly hide what should be hidden
-        cellGraphFilter.addHiddens(hide);
-        // this most likely doesn't need parallelization because the bottleneck is cell-graph computation
-        Collection<List<SentenceState>> buckets = cellGraphFilter.add(layerSentences, hide, clausesGenerator);
+    // expects cell graphs to be filled in already
+    private void hideByCellGraphs(List<SentenceState> layerSentences, Set<SentenceState> hide, CellGraphFilter cellGraphFilter, ClausesGenerator clausesGenerator) {
+        Collection<List<SentenceState>> buckets;
+        synchronized (cellGraphFilter) { // the filter is shared by workers of the parallel DFS
+            // proceed hide as first! then do the same with layerSentence
+            // firstly hide what should be hidden
+            cellGraphFilter.addHiddens(hide);
+            // this most likely doesn't need parallelization because the bottleneck is cell-graph computation
+            buckets = cellGraphFilter.add(layerSentences, hide, clausesGenerator);
+        }
 
         /*
         buckets.stream().filter(c -> c.size() > 1)
@@ -764,13 +1641,14 @@ public class SentenceFinder {
     }
 
 
-    private Triple<List<SentenceState>, String, Counters<Integer>> isoPruneParallel
-            (List<SentenceState> sentences, ClausesGenerator clausesGenerator) {
-        LiteralsCache cache = LiteralsCache.getLayer();
-        ConcurrentIsoHandler iso = new ConcurrentIsoHandler();
-        List<SentenceState> retVal = sentences
+    private List<SentenceState> isoPruneParallel(List<SentenceState> sentences, ConcurrentIsoHandler iso, LiteralsCache cache,
+                                                 ClausesGenerator clausesGenerator) {
+        return sentences
                 .parallelStream()
                 .filter(sentence -> {
+                    if (shouldEnd()) {
+                        return false;
+                    }
                     SentenceState witness = iso.contains(sentence.getICW(cache));
                     boolean val = null == witness;
                     if (clausesGenerator.useLogger && !val) {
@@ -778,8 +1656,6 @@ public class SentenceFinder {
                     }
                     return val;
                 }).collect(Collectors.toList());
-        cache.forget();
-        return new Triple<>(retVal, toDistribution(iso), toCounter(iso.entrySet()));
     }
 
     // TODO these two methods are not nice, they are recopy but do the same thing :(
@@ -843,12 +1719,27 @@ public class SentenceFinder {
     private List<SentenceState> connectToSizeParallel(int numberOfLiterals, MultiList<Integer, SentenceState> sentences,
                                                       MultiList<Integer, Clause> clausesByLength, List<JoiningFilter> connectionFilters,
                                                       SentenceState seed, ClausesGenerator clausesGenerator) {
-        List<SentenceState> retVal = IntStream.range(1, numberOfLiterals).parallel()
+        List<SentenceState> retVal = connectParents(numberOfLiterals, sentences, clausesByLength, connectionFilters);
+        retVal.addAll(connectSingleClauses(numberOfLiterals, clausesByLength, connectionFilters, seed, clausesGenerator));
+        return retVal;
+    }
+
+    // sentences of the retained layers joined with clauses of the complementary length
+    private List<SentenceState> connectParents(int numberOfLiterals, MultiList<Integer, SentenceState> sentences,
+                                               MultiList<Integer, Clause> clausesByLength, List<JoiningFilter> connectionFilters) {
+        return IntStream.range(1, numberOfLiterals).parallel()
                 .boxed()
                 .flatMap(startLength -> connect(sentences.get(startLength),
                         clausesByLength.get(numberOfLiterals - startLength),
                         connectionFilters))
                 .collect(Collectors.toList());
+    }
+
+    // sentences consisting of a single clause (plus the seed)
+    private List<SentenceState> connectSingleClauses(int numberOfLiterals, MultiList<Integer, Clause> clausesByLength,
+                                                     List<JoiningFilter> connectionFilters, SentenceState seed,
+                                                     ClausesGenerator clausesGenerator) {
+        List<SentenceState> retVal = Sugar.list();
         if (clausesByLength.containsKey(numberOfLiterals)) {
             if (null == seed) {
                 Stream<Clause> clausesStream = clausesByLength.get(numberOfLiterals).stream();
@@ -863,14 +1754,66 @@ public class SentenceFinder {
                 }
                 stream.forEach(retVal::add);
             } else {
-                clausesByLength.get(numberOfLiterals).stream()
-                        .filter(clause -> connectionFilters.stream().allMatch(filter -> filter.test(seed, clause)))
+                joinable(seed, clausesByLength.get(numberOfLiterals), connectionFilters)
                         .forEach(clause -> retVal.add(seed.extend(clause)));
             }
         }
         return retVal;
     }
 
+    // the whole layer in a single chunk; returns null once it has been handed over
+    private Supplier<List<SentenceState>> wholeLayerCandidates(int numberOfLiterals, MultiList<Integer, SentenceState> sentences,
+                                                               MultiList<Integer, Clause> clausesByLength, List<JoiningFilter> connectionFilters,
+                                                               SentenceState seed, ClausesGenerator clausesGenerator) {
+        boolean[] done = {false};
+        return () -> {
+            if (done[0]) {
+                return null;
+            }
+            done[0] = true;
+            return connectToSizeParallel(numberOfLiterals, sentences, clausesByLength, connectionFilters, seed, clausesGenerator);
+        };
+    }
+
+    // lazily produces chunks of roughly chunkSize candidates; a slice of parent sentences is refined by all clauses of the
+    // complementary length at once, so a chunk may overshoot the limit by at most one slice; returns null at the end.
+    // Slices are cut as they come, so that a chunk size shrunk in the middle of a layer applies to the following chunks.
+    private Supplier<List<SentenceState>> chunkedCandidates(int numberOfLiterals, MultiList<Integer, SentenceState> sentences,
+                                                            MultiList<Integer, Clause> clausesByLength, List<JoiningFilter> connectionFilters,
+                                                            SentenceState seed, ClausesGenerator clausesGenerator) {
+        List<Integer> joins = Sugar.list(); // lengths of parents; a parent layer is looked up each time since it may be spilled meanwhile
+        for (int startLength = 1; startLength < numberOfLiterals; startLength++) {
+            if (!sentences.get(startLength).isEmpty() && !clausesByLength.get(numberOfLiterals - startLength).isEmpty()) {
+                joins.add(startLength);
+            }
+        }
+        int[] next = {0, 0}; // the join and the first parent of the next slice
+        boolean[] singlesDone = {false};
+        return () -> {
+            List<SentenceState> chunk = Sugar.list();
+            while (chunk.size() < chunkSize) {
+                if (next[0] < joins.size()) {
+                    List<SentenceState> parents = sentences.get(joins.get(next[0]));
+                    List<Clause> clauses = clausesByLength.get(numberOfLiterals - joins.get(next[0]));
+                    int sliceSize = Math.max(1, chunkSize / clauses.size());
+                    List<SentenceState> slice = parents.subList(next[1], Math.min(parents.size(), next[1] + sliceSize));
+                    chunk.addAll(connect(slice, clauses, connectionFilters).collect(Collectors.toList()));
+                    next[1] += slice.size();
+                    if (next[1] >= parents.size()) {
+                        next[0]++;
+                        next[1] = 0;
+                    }
+                } else if (!singlesDone[0]) {
+                    singlesDone[0] = true;
+                    chunk.addAll(connectSingleClauses(numberOfLiterals, clausesByLength, connectionFilters, seed, clausesGenerator));
+                } else {
+                    break;
+                }
+            }
+            return chunk.isEmpty() ? null : chunk;
+        };
+    }
+
     private List<SentenceState> connectToSize(int numberOfLiterals, MultiList<
             Integer, SentenceState> sentences, MultiList<Integer, Clause> clausesByLength, List<JoiningFilter> connectionFilters) {
         List<SentenceState> retVal = Sugar.list();
@@ -891,8 +1834,8 @@ public class SentenceFinder {
             return Stream.empty();
         }
         return sentences.parallelStream()
-                .flatMap(sentence -> clauses.stream()
-                        .filter(clause -> connectionFilters.stream().allMatch(filter -> filter.test(sentence, clause)))
+                .filter(sentence -> !shouldEnd()) // the rest would be thrown away anyway
+                .flatMap(sentence -> joinable(sentence, clauses, connectionFilters)
                         .map(sentence::extend)
                 );
     }
@@ -901,14 +1844,25 @@ public class SentenceFinder {
         if (clauses.isEmpty()) {
             return Stream.empty();
         }
-        return clauses.parallelStream()
+        return (null == compatibility ? clauses : compatibility.compatible(sentence, clauses)).parallelStream()
                 .filter(clause -> connectionFilters.stream().allMatch(filter -> filter.test(sentence, clause)))
                 .map(sentence::extend);
     }
 
+    // clauses passing the joining filters with the sentence; with compatibility bitsets, only residual filters are evaluated here
+    private Stream<Clause> joinable(SentenceState sentence, List<Clause> clauses, List<JoiningFilter> connectionFilters) {
+        return (null == compatibility ? clauses : compatibility.compatible(sentence, clauses)).stream()
+                .filter(clause -> connectionFilters.stream().allMatch(filter -> filter.test(sentence, clause)));
+    }
+
 
-    private boolean shouldEnd(long start) {
-        return null != this.setup.timeLimit && this.setup.timeLimit > 0 && this.setup.timeLimit <= (System.nanoTime() - start) / 60_000_000_000L; // 1min = 60*10^9 milliseconds
+    private boolean shouldEnd() {
+        return Deadline.expired();
+    }
+
+    // passes the sentence filters before the deadline, i.e. none of them has been cut short
+    private boolean verified(SentenceState sentence, List<SingleFilter<SentenceState>> sentenceFilters) {
+        return !shouldEnd() && sentenceFilters.stream().allMatch(filter -> filter.test(sentence)) && !shouldEnd();
     }
 
     private Long timeToNowInSeconds(long start) {
@@ -916,7 +1870,11 @@ public class SentenceFinder {
     }
 
     private Long timeToSeconds(long start, long end) {
-        return (end - start) / 1_000_000_000;
+        return toSeconds(end - start);
+    }
+
+    private Long toSeconds(long nanoseconds) {
+        return nanoseconds / 1_000_000_000;
     }
 
     private String histogramToString(Counters<Integer> counter) {
@@ -929,9 +1887,17 @@ public class SentenceFinder {
         return counter;
     }
 
-    private Counters<Integer> sentencesToHistogram(List<SentenceState> sentences) {
+    private Counters<Integer> sentencesToHistogram(MultiList<Integer, SentenceState> sentences) {
         Counters<Integer> counter = new Counters<>();
-        sentences.forEach(sentence -> counter.increment(sentence.countLiterals()));
+        for (List<SentenceState> layer : sentences.values()) {
+            if (layer instanceof IdLayer) { // do not materialize the whole layer just for the statistics
+                if (!layer.isEmpty()) {
+                    counter.add(layer.get(0).countLiterals(), layer.size());
+                }
+            } else {
+                layer.forEach(sentence -> counter.increment(sentence.countLiterals()));
+            }
+        }
         return counter;
     }
 
@@ -954,6 +1920,7 @@ public class SentenceFinder {
     private void printMessage(String message, boolean isComment, PrintStream out) {
         if (isComment) {
             out.println("# " + message);
+            out.flush(); // comments mark progress, so they (and everything before them) are handed over to be written
         } else {
             out.println(message);
         }
@@ -3,6 +3,8 @@ package ida.sentences;
 import ida.ilp.logic.Predicate;
 import ida.ilp.logic.PredicateFactory;
 import ida.ilp.logic.Variable;
+import ida.ilp.logic.special.IsoStrategy;
+import ida.sentences.storage.Checkpoint;
 import ida.utils.Sugar;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.api.StatefulRedisConnection;
@@ -25,6 +27,7 @@ public class SentenceSetup {
     public final int maxClauses; // TODO there is no filter based on this
     public final int maxLiteralsPerClause;
     public final List<Predicate> predicates;
+    private final Map<Integer, List<Predicate>> sortedPredicates; // by arity, sorted by their names
 
     public final boolean quantifiers;
     public final boolean languageBias;
@@ -56,6 +59,32 @@ public class SentenceSetup {
     public final String cellGraph;
     public final String mode;
     public String fastWFOMCVersion;
+    public final int chunkSize; // BFS only; 0 means that the whole layer is materialized at once
+    public final String layerStore; // BFS only; directory for memory-mapped layers, null keeps layers on heap
+    public final boolean compactLayers; // BFS only; layers kept on heap are stored as arrays of clause ids and predicate masks
+    public final boolean canonicalAugmentation; // BFS only; a child is generated only from its canonical parent, off in debug
+    public final boolean orderedExtension; // clauses are joined in the order of their ids only
+    public final boolean asyncOutput; // standard output and error are written by a dedicated thread in large buffers; off in debug
+    public final int sortRun; // BFS only; at most this many lines of a layer are sorted in memory, the rest is merged from sorted runs spilled into workDir; 0 sorts whole chunks in memory
+    public final String outputFile; // the standard output goes to this file instead, gzipped if it ends with .gz; not for workers
+    public final double memoryThreshold; // occupied fraction of the heap after a collection which makes the search relieve memory, 0 means never
+    public final String checkpoint; // binary checkpoint written at the end of each layer, null means no checkpoints
+    public final String loadCheckpoint; // binary checkpoint to continue from
+    public final int dfsThreads; // DFS only; 0 keeps the sequential engine, otherwise size of the work-stealing pool
+    public final long checkpointInterval; // DFS only; minutes between two checkpoints, 0 stores one after each opened node
+    public final int workers; // BFS only; number of worker processes, 0 runs the search within this process
+    public final int workerId; // set by the coordinator for its worker processes, -1 otherwise
+    public final String workDir; // directory shared with worker processes, also for sorted runs; null means the default temporary directory
+    public final String metricsFile; // JSON-lines metrics, null means no metrics
+    public final int metricsBatch; // DFS only; number of opened nodes per metrics record
+    public final boolean adaptiveFilters; // filters are evaluated in an order learned from their cost and rejection rate; off in debug
+    public final boolean compatibilityBitsets; // pairwise joining filters are precomputed into bitsets over the clause basis; off in debug
+    public final boolean fingerprints; // sets of seen canonical forms keep 128-bit fingerprints instead of strings; off in debug
+    public final String fingerprintStore; // directory for memory-mapped tables of fingerprints, null keeps them on heap
+    public final int cannonCache; // max number of minimal single-clause renamings shared among sentences, 0 turns the cache off
+    public final boolean isoVerify; // matches of exact strategies (canonical forms) are verified by the CSP-based isomorphism
+    public final IsoStrategy isoStrategy; // wrapper of sentences and cell graphs for isomorphism checks; icw (MD5 of strings), int (colours on ints), canonical (canonical labeling), or bruteForce
+    public final List<IsoStrategy> isoBenchmark; // BFS only; strategies compared on the candidates of each layer, empty means no benchmark
 
     public final String seed;
     public final Long timeLimit;
@@ -84,6 +113,9 @@ public class SentenceSetup {
         this.maxClauses = maxClauses;
         this.maxLiteralsPerClause = maxLiteralsPerClause;
         this.predicates = predicates;
+        this.sortedPredicates = null == predicates ? Map.of() : predicates.stream()
+                .sorted(Comparator.comparing(Predicate::toString))
+                .collect(Collectors.groupingBy(Predicate::getArity, Collectors.toUnmodifiableList()));
         this.variables = variables;
         this.variablesSet = Sugar.setFromCollections(variables);
         this.quantifiers = quantifiers;
@@ -129,6 +161,36 @@ public class SentenceSetup {
         this.canonicalCellGraphs = canonicalCellGraphs;
 
         this.mode = mode;
+        this.chunkSize = Integer.parseInt(System.getProperty("ida.sentenceSetup.chunkSize", "0"));
+        this.layerStore = System.getProperty("ida.sentenceSetup.layerStore");
+        this.compactLayers = "true".equalsIgnoreCase(System.getProperty("ida.sentenceSetup.compactLayers", "true"));
+        this.canonicalAugmentation = !debug && "true".equalsIgnoreCase(System.getProperty("ida.sentenceSetup.canonicalAugmentation", "false"));
+        this.orderedExtension = "true".equalsIgnoreCase(System.getProperty("ida.sentenceSetup.orderedExtension", "false"));
+        this.asyncOutput = !debug && "true".equalsIgnoreCase(System.getProperty("ida.sentenceSetup.asyncOutput", "true"));
+        this.sortRun = Integer.parseInt(System.getProperty("ida.sentenceSetup.sortRun", "0"));
+        this.memoryThreshold = Double.parseDouble(System.getProperty("ida.sentenceSetup.memoryThreshold", "0"));
+        this.checkpoint = System.getProperty("ida.sentenceSetup.checkpoint");
+        this.loadCheckpoint = System.getProperty("ida.sentenceSetup.loadCheckpoint");
+        this.dfsThreads = Integer.parseInt(System.getProperty("ida.sentenceSetup.dfsThreads", "0"));
+        this.checkpointInterval = Long.parseLong(System.getProperty("ida.sentenceSetup.checkpointInterval", "10"));
+        this.workers = Integer.parseInt(System.getProperty("ida.sentenceSetup.workers", "0"));
+        this.workerId = Integer.parseInt(System.getProperty("ida.sentenceSetup.workerId", "-1"));
+        this.outputFile = workerId >= 0 ? null : System.getProperty("ida.sentenceSetup.outputFile", null); // workers inherit the options
+        this.workDir = System.getProperty("ida.sentenceSetup.workDir");
+        this.metricsFile = System.getProperty("ida.sentenceSetup.metricsFile");
+        this.metricsBatch = Integer.parseInt(System.getProperty("ida.sentenceSetup.metricsBatch", "1000"));
+        this.adaptiveFilters = !debug && "true".equalsIgnoreCase(System.getProperty("ida.sentenceSetup.adaptiveFilters", "true"));
+        this.compatibilityBitsets = !debug && "true".equalsIgnoreCase(System.getProperty("ida.sentenceSetup.compatibilityBitsets", "true"));
+        this.fingerprints = !debug && "true".equalsIgnoreCase(System.getProperty("ida.sentenceSetup.fingerprints", "true"));
+        this.fingerprintStore = System.getProperty("ida.sentenceSetup.fingerprintStore");
+        this.cannonCache = Integer.parseInt(System.getProperty("ida.sentenceSetup.cannonCache", "262144"));
+        this.isoVerify = "true".equalsIgnoreCase(System.getProperty("ida.sentenceSetup.isoVerify", "false"));
+        this.isoStrategy = IsoStrategy.create(System.getProperty("ida.sentenceSetup.isoStrategy", "icw"), isoVerify);
+        this.isoBenchmark = Arrays.stream(System.getProperty("ida.sentenceSetup.isoBenchmark", "").split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .map(name -> IsoStrategy.create(name, isoVerify))
+                .collect(Collectors.toList());
 
         this.redis = redis;
         if (null != redis && computeCellGraph) { // if Julia's cell-graph file is not provided, do not connect to Redis at all
@@ -227,11 +289,26 @@ public class SentenceSetup {
         return new SentenceSetup(maxOverallLiterals, maxClauses, maxLiteralsPerClause, predicates, variables, quantifiers, statesStoring, prover9Path, reflexiveAtoms, errOut, permutingArguments, cellGraph, debug, trivialConstraints, juliaThreads, decomposableComponents, naiveTautology, tautologyFilter, contradictionFilter, subsumption, quantifiersReducibility, maxK, maxCountingClauses, maxLiteralsPerCountingClause, doubleCountingExist, countingContradictionFilter, maxProver9Seconds, seed, negations, isomorphicSentences, timeLimit, cellTimeLimit, "", languageBias, lexicographicalMatching, canonicalCellGraphs, mode);
     }
 
+    // predicates of the given arity sorted by their names
+    public List<Predicate> getSortedPredicates(int arity) {
+        return sortedPredicates.getOrDefault(arity, List.of());
+    }
+
     public boolean continueWithSearch() {
         return null != errOut;
     }
 
+    public boolean continueFromCheckpoint() {
+        return null != loadCheckpoint && Files.exists(Paths.get(loadCheckpoint));
+    }
+
     public static SentenceSetup createFromCmd() {
+        Path checkpoint = Paths.get(System.getProperty("ida.sentenceSetup.loadCheckpoint", "null"));
+        if (Files.exists(checkpoint)) {
+            String line = Checkpoint.readSetupLine(checkpoint);
+            System.out.println("# taking setup line from checkpoint\t" + line);
+            return createFromSetupLine(line, null);
+        }
         Path errOut = Paths.get(System.getProperty("ida.sentenceSetup.loadErrOut", "null"));
         if (Files.exists(errOut)) {
             return createFromStoredState(errOut);
@@ -349,56 +426,64 @@ public class SentenceSetup {
             }
             String line = setupLines.get(setupLines.size() - 1);
             System.out.println("# taking setup line\t" + line);
-
-            Map<String, String> values = stringToValues(line);
-
-            int unaryPredicates = values.get("predicates").split("/1").length - 1;
-            int binaryPredicates = values.get("predicates").split("/2").length - 1;
-            int variablesCount = values.get("variables").substring(1, values.get("variables").length() - 1).split(";").length;
-            return new SentenceSetup(Integer.parseInt(values.get("maxOverallLiterals")),
-                    Integer.parseInt(values.get("maxClauses")),
-                    Integer.parseInt(values.get("maxLiteralsPerClause")),
-                    unaryPredicates,
-                    binaryPredicates,
-                    variablesCount,
-                    "true".equalsIgnoreCase(values.get("quantifiers")),
-                    "true".equalsIgnoreCase(values.get("statesStoring")),
-                    values.get("prover9Path"),
-                    "true".equalsIgnoreCase(values.get("reflexiveAtoms")),
-                    errOut,
-                    "true".equalsIgnoreCase(values.get("permutingArguments")),
-                    values.get("cellGraph"),
-                    "true".equalsIgnoreCase(values.get("debug")),
-                    "true".equalsIgnoreCase(values.get("trivialConstraints")),
-                    Integer.parseInt(values.get("juliaThreads")),
-                    "true".equalsIgnoreCase(values.get("decomposableComponents")),
-                    "true".equalsIgnoreCase(values.get("naiveTautology")),
-                    "true".equalsIgnoreCase(values.get("tautologyFilter")),
-                    "true".equalsIgnoreCase(values.get("contradictionFilter")),
-                    "true".equalsIgnoreCase(values.get("subsumption")),
-                    "true".equalsIgnoreCase(values.get("quantifiersReducibility")),
-                    Integer.parseInt(values.get("maxK")),
-                    Integer.parseInt(values.get("maxCountingClauses")),
-                    Integer.parseInt(values.get("maxLiteralsPerCountingClause")),
-                    "true".equalsIgnoreCase(values.get("doubleCountingExist")),
-                    "true".equalsIgnoreCase(values.get("countingContradictionFilter")),
-                    Integer.parseInt(values.get("maxProver9Seconds")),
-                    values.get("seed"),
-                    "true".equalsIgnoreCase(values.get("negations")),
-                    "true".equalsIgnoreCase(values.get("isomorphicSentences")),
-                    "null".equals(values.get("timeLimit")) ? null : Long.parseLong(values.get("timeLimit")),
-                    Long.parseLong(values.get("cellTimeLimit")),
-                    values.get("redis"),
-                    "true".equalsIgnoreCase(values.get("languageBias")),
-                    "true".equalsIgnoreCase(values.get("lexicographicalMatching")),
-                    "true".equalsIgnoreCase(values.get("canonicalCellGraphs")),
-                    values.get("mode")
-            );
+            return createFromSetupLine(line, errOut);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    // setup of a stored search, e.g. taken from the first line of an output file
+    public static SentenceSetup createFromSetupLine(String line) {
+        return createFromSetupLine(line, null);
+    }
+
+    private static SentenceSetup createFromSetupLine(String line, Path errOut) {
+        Map<String, String> values = stringToValues(line);
+
+        int unaryPredicates = values.get("predicates").split("/1").length - 1;
+        int binaryPredicates = values.get("predicates").split("/2").length - 1;
+        int variablesCount = values.get("variables").substring(1, values.get("variables").length() - 1).split(";").length;
+        return new SentenceSetup(Integer.parseInt(values.get("maxOverallLiterals")),
+                Integer.parseInt(values.get("maxClauses")),
+                Integer.parseInt(values.get("maxLiteralsPerClause")),
+                unaryPredicates,
+                binaryPredicates,
+                variablesCount,
+                "true".equalsIgnoreCase(values.get("quantifiers")),
+                "true".equalsIgnoreCase(values.get("statesStoring")),
+                values.get("prover9Path"),
+                "true".equalsIgnoreCase(values.get("reflexiveAtoms")),
+                errOut,
+                "true".equalsIgnoreCase(values.get("permutingArguments")),
+                values.get("cellGraph"),
+                "true".equalsIgnoreCase(values.get("debug")),
+                "true".equalsIgnoreCase(values.get("trivialConstraints")),
+                Integer.parseInt(values.get("juliaThreads")),
+                "true".equalsIgnoreCase(values.get("decomposableComponents")),
+                "true".equalsIgnoreCase(values.get("naiveTautology")),
+                "true".equalsIgnoreCase(values.get("tautologyFilter")),
+                "true".equalsIgnoreCase(values.get("contradictionFilter")),
+                "true".equalsIgnoreCase(values.get("subsumption")),
+                "true".equalsIgnoreCase(values.get("quantifiersReducibility")),
+                Integer.parseInt(values.get("maxK")),
+                Integer.parseInt(values.get("maxCountingClauses")),
+                Integer.parseInt(values.get("maxLiteralsPerCountingClause")),
+                "true".equalsIgnoreCase(values.get("doubleCountingExist")),
+                "true".equalsIgnoreCase(values.get("countingContradictionFilter")),
+                Integer.parseInt(values.get("maxProver9Seconds")),
+                values.get("seed"),
+                "true".equalsIgnoreCase(values.get("negations")),
+                "true".equalsIgnoreCase(values.get("isomorphicSentences")),
+                "null".equals(values.get("timeLimit")) ? null : Long.parseLong(values.get("timeLimit")),
+                Long.parseLong(values.get("cellTimeLimit")),
+                values.get("redis"),
+                "true".equalsIgnoreCase(values.get("languageBias")),
+                "true".equalsIgnoreCase(values.get("lexicographicalMatching")),
+                "true".equalsIgnoreCase(values.get("canonicalCellGraphs")),
+                values.get("mode")
+        );
+    }
+
     private static Map<String, String> stringToValues(String line) {
         if (!line.contains("{") || !line.contains("}")) {
             throw new IllegalStateException("Cannot parse line:\t" + line);
@@ -487,6 +572,28 @@ public class SentenceSetup {
                 ", canonicalCellGraphs=" + canonicalCellGraphs +
                 ", fastWfOMCVersion=" + fastWFOMCVersion +
                 ", mode=" + mode +
+                ", chunkSize=" + chunkSize +
+                ", layerStore=" + layerStore +
+                ", compactLayers=" + compactLayers +
+                ", canonicalAugmentation=" + canonicalAugmentation +
+                ", orderedExtension=" + orderedExtension +
+                ", asyncOutput=" + asyncOutput +
+                ", sortRun=" + sortRun +
+                ", outputFile=" + outputFile +
+                ", memoryThreshold=" + memoryThreshold +
+                ", checkpoint=" + checkpoint +
+                ", dfsThreads=" + dfsThreads +
+                ", checkpointInterval=" + checkpointInterval +
+                ", workers=" + workers +
+                ", metricsFile=" + metricsFile +
+                ", adaptiveFilters=" + adaptiveFilters +
+                ", compatibilityBitsets=" + compatibilityBitsets +
+                ", fingerprints=" + fingerprints +
+                ", fingerprintStore=" + fingerprintStore +
+                ", cannonCache=" + cannonCache +
+                ", isoStrategy=" + isoStrategy +
+                ", isoVerify=" + isoVerify +
+                ", isoBenchmark=" + "[" + isoBenchmark.stream().map(IsoStrategy::getName).collect(Collectors.joining("; ")) + "]" +
                 '}';
     }
 
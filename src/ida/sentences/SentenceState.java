@@ -5,6 +5,7 @@ import ida.ilp.logic.*;
 import ida.ilp.logic.quantifiers.Quantifier;
 import ida.ilp.logic.quantifiers.TwoQuantifiers;
 import ida.ilp.logic.special.IsoClauseWrapper;
+import ida.sentences.caches.CannonCache;
 import ida.sentences.caches.LiteralsCache;
 import ida.utils.Combinatorics;
 import ida.utils.Sugar;
@@ -24,12 +25,20 @@ public class SentenceState {
     private String ultraCannonic; // negation swaps, relations swap
     private IsoClauseWrapper icw;
     private String canonicalCellGraph;
+    private SentenceState parent; // the sentence extended by the last clause, kept until this one is prepared
+    private Prepared prepared;
 
     public SentenceState(List<Clause> clauses, SentenceSetup setup) {
         this.clauses = clauses;
         this.setup = setup;
     }
 
+    // the predicates are known beforehand (e.g. shared by sentences of a compact layer), so the set must not be modified
+    public SentenceState(List<Clause> clauses, SentenceSetup setup, Set<Pair<String, Integer>> predicates) {
+        this(clauses, setup);
+        this.predicates = predicates;
+    }
+
     public static SentenceState create(SentenceSetup setup) {
         return create(Sugar.list(), setup);
     }
@@ -37,7 +46,9 @@ public class SentenceState {
     public SentenceState extend(Clause clause) {
         List<Clause> list = Sugar.listFromCollections(clauses);
         list.add(clause);
-        return new SentenceState(list, setup);
+        SentenceState retVal = new SentenceState(list, setup);
+        retVal.parent = this;
+        return retVal;
     }
 
     public SentenceState extend(SentenceState sentence) {
@@ -65,22 +76,15 @@ public class SentenceState {
 
     public IsoClauseWrapper getICW(LiteralsCache cache) {
         if (null == this.icw) {
-            this.icw = IsoClauseWrapper.create(computeRepresentationWith(clauses, cache));
+            this.icw = setup.isoStrategy.wrap(computeRepresentationWith(clauses, cache));
             this.icw.getOriginalClause().setSentence(this);
         }
         return this.icw;
     }
 
-    private Set<Pair<String, Integer>> getBinaryPredicates() {
-        Set<Pair<String, Integer>> result = Sugar.set();
-        for (Clause clause : clauses) {
-            for (Pair<String, Integer> predicate : LogicUtils.predicates(clause)) {
-                if (predicate.getS() == 2) {
-                    result.add(predicate);
-                }
-            }
-        }
-        return result;
+    // the clause wrapped by getICW, computed anew
+    public Clause getRepresentation(LiteralsCache cache) {
+        return computeRepresentationWith(clauses, cache);
     }
 
     // TODO think about how making this method faster and nicer :)) profile it!
@@ -330,14 +334,11 @@ public class SentenceState {
 
     public String getUltraCannonic() {
         if (null == ultraCannonic) {
-            Set<Pair<String, Integer>> originalUnary = getPredicates();
-            Set<Pair<String, Integer>> originalBinary = getBinaryPredicates(); // TODO why so complicated???
-
-            List<Predicate> unary = fetchMinimalPredicates(originalUnary, 1);
-            List<Predicate> binary = fetchMinimalPredicates(originalBinary, 2);
+            Prepared prepared = getPrepared();
+            List<Predicate> unary = fetchMinimalPredicates(prepared.names.size(), 1);
+            List<Predicate> binary = fetchMinimalPredicates(prepared.binary, 2);
 
-            List<Clause> canonPrefixes = toCannonPrefixes(toAnonymousPredicates(clauses));
-            MultiList<Quantifier, Clause> grouped = groupByPrefixes(canonPrefixes);
+            MultiList<Quantifier, Clause> grouped = groupByPrefixes(prepared.clauses);
             List<Quantifier> order = grouped.keySet().stream().sorted(Comparator.comparing(Quantifier::getPrefix)).toList();
 
             List<Clause> canonClause = createCannon(order, grouped, unary, binary, new HashMap<>(), Sugar.set(), Sugar.set()); // TODO for RL, may be return this instead :))
@@ -346,22 +347,56 @@ public class SentenceState {
         return ultraCannonic;
     }
 
-    private List<Clause> toAnonymousPredicates(List<Clause> clauses) {
-        Map<Predicate, Predicate> map = new HashMap<>();
-        List<Clause> retVal = Sugar.list();
-        for (Clause clause : clauses) {
-            List<Literal> lits = Sugar.list();
-            for (Literal literal : clause.literals()) {
-                if (!map.containsKey(literal.pred())) {
-                    map.put(literal.pred(), Predicate.create("a" + map.keySet().size(), literal.arity()));
-                }
+    // A child prepares only its last clause, reusing the prepared clauses of its parent (computed once for all children).
+    private Prepared getPrepared() {
+        Prepared retVal = prepared;
+        if (null == retVal) {
+            SentenceState from = parent;
+            retVal = null == from || from.clauses.size() + 1 != clauses.size()
+                    ? Prepared.EMPTY.extend(clauses)
+                    : from.getPrepared().extend(clauses.subList(clauses.size() - 1, clauses.size()));
+            this.prepared = retVal;
+            this.parent = null;
+        }
+        return retVal;
+    }
+
+    // clauses with predicates renamed to a0, a1,... in the order of their first occurrence and with canonical prefixes
+    private static final class Prepared {
+        private static final Prepared EMPTY = new Prepared(Sugar.list(), new HashMap<>(), 0);
+
+        private final List<Clause> clauses;
+        private final Map<Predicate, Predicate> names; // original to anonymous
+        private final int binary; // number of binary predicates among names
+
+        private Prepared(List<Clause> clauses, Map<Predicate, Predicate> names, int binary) {
+            this.clauses = clauses;
+            this.names = names;
+            this.binary = binary;
+        }
+
+        private Prepared extend(List<Clause> added) {
+            Map<Predicate, Predicate> map = new HashMap<>(names);
+            List<Clause> retVal = new ArrayList<>(clauses.size() + added.size());
+            retVal.addAll(clauses);
+            int binaryPredicates = binary;
+            for (Clause clause : added) {
+                List<Literal> lits = Sugar.list();
+                for (Literal literal : clause.literals()) {
+                    if (!map.containsKey(literal.pred())) {
+                        map.put(literal.pred(), Predicate.create("a" + map.keySet().size(), literal.arity()));
+                        if (2 == literal.arity()) {
+                            binaryPredicates++;
+                        }
+                    }
 //                Literal newLiteral = new Literal(map.get(literal.pred()).getName(), literal.isNegated(), literal.arguments());
-                Literal newLiteral = LiteralsCache.getInstance().constructAndGet(map.get(literal.pred()).getName(), literal.isNegated(), literal.arguments());
-                lits.add(newLiteral);
+                    Literal newLiteral = LiteralsCache.getInstance().constructAndGet(map.get(literal.pred()).getName(), literal.isNegated(), literal.arguments());
+                    lits.add(newLiteral);
+                }
+                retVal.add(toCannonPrefix(Clause.create(clause.getQuantifier(), lits)));
             }
-            retVal.add(Clause.create(clause.getQuantifier(), lits));
+            return new Prepared(retVal, map, binaryPredicates);
         }
-        return retVal;
     }
 
     private List<Clause> createCannon(List<Quantifier> order, MultiList<Quantifier, Clause> grouped, List<Predicate> unary, List<Predicate> binary, Map<Predicate, Predicate> predicateMapping, Set<Predicate> negationSwap, Set<Predicate> directionFlip) {
@@ -430,6 +465,16 @@ public class SentenceState {
         if (unsetUnary.isEmpty() && unsetBinary.isEmpty()) {// all is set from the previous steps!
             return Sugar.list(new Configuration(freeUnary, freeBinary, predicateMapping, negationSwap, directionFlip, clause));
         }
+        CannonCache.Key key = null;
+        if (setup.cannonCache > 0) {
+            key = CannonCache.key(clause, freeUnary, freeBinary);
+            List<Configuration> known = CannonCache.getInstance().get(key);
+            if (null != known) {
+                return known.stream().map(choice -> new Configuration(choice.freeUnary, choice.freeBinary, join(choice.mapping, predicateMapping),
+                        Sugar.union(negationSwap, choice.negationSwap), Sugar.union(directionFlip, choice.directionSwap), choice.clause)).toList();
+            }
+        }
+        List<Configuration> choices = Sugar.list(); // only what has been decided on this clause
         String minimal = null;
         List<Configuration> all = Sugar.list();
         List<Map<Predicate, Predicate>> mappings = generateMappings(Sugar.listFromCollections(unsetUnary), freeUnary.subList(0, unsetUnary.size()),
@@ -453,16 +498,21 @@ public class SentenceState {
                     if (compare < 0) {
                         minimal = direction.getCannonic();
                         all.clear();
+                        choices.clear();
                     }
                     if (compare <= 0) {
                         all.add(new Configuration(restUnary, restBinary, join(mapping, predicateMapping),
                                 Sugar.union(negationSwap, negations),
                                 Sugar.union(directionFlip, flips),
                                 direction));
+                        choices.add(new Configuration(restUnary, restBinary, mapping, Sugar.setFromCollections(negations), Sugar.setFromCollections(flips), direction));
                     }
                 }
             }
         }
+        if (null != key) {
+            CannonCache.getInstance().put(key, choices, setup.cannonCache);
+        }
         return all;
     }
 
@@ -541,21 +591,20 @@ public class SentenceState {
         return retVal;
     }
 
-    private List<Clause> toCannonPrefixes(List<Clause> clauses) {
-        return clauses.stream().map(clause -> {
-            if (clause.isDecomposable()) {
+    private static Clause toCannonPrefix(Clause clause) {
+        if (clause.isDecomposable()) {
 //            if (clause.getQuantifier().isSwappable()) {
-                Quantifier quantifier = clause.getQuantifier();
-                if (quantifier.getPrefix().compareTo(quantifier.getMirror().getPrefix()) > 0) {
-                    return new Clause(quantifier.getMirror(), clause.literals().stream().map(literal -> literal.getMirror(quantifier.flipSubstitution())).toList());
-                }
+            Quantifier quantifier = clause.getQuantifier();
+            if (quantifier.getPrefix().compareTo(quantifier.getMirror().getPrefix()) > 0) {
+                return new Clause(quantifier.getMirror(), clause.literals().stream().map(literal -> literal.getMirror(quantifier.flipSubstitution())).toList());
             }
-            return clause;
-        }).collect(Collectors.toList());
+        }
+        return clause;
     }
 
-    private List<Predicate> fetchMinimalPredicates(Set<Pair<String, Integer>> pred, int arity) {
-        return setup.predicates.stream().filter(predicate -> predicate.getArity() == arity).sorted(Comparator.comparing(Predicate::toString)).limit(pred.size()).collect(Collectors.toList());
+    private List<Predicate> fetchMinimalPredicates(int count, int arity) {
+        List<Predicate> sorted = setup.getSortedPredicates(arity);
+        return sorted.subList(0, Math.min(count, sorted.size()));
     }
 
     private Clause flipNegations(Clause clause, Collection<Predicate> flip) {
@@ -586,6 +635,8 @@ public class SentenceState {
         this.icw = null;
         this.cellGraph = null;
         this.canonicalCellGraph = null;
+        this.parent = null;
+        this.prepared = null;
     }
 
     public void setCanonicalCellGraph(String cellGraph) {
@@ -0,0 +1,170 @@
+package ida.sentences.benchmarks;
+
+import ida.utils.Sugar;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntToLongFunction;
+import java.util.regex.Pattern;
+
+// A small micro-benchmark harness: every benchmark runs over its inputs in passes, first a few warm-up iterations and
+// then the measured ones, each at least iterationMillis long. The reported score is the mean time of a single operation
+// over the measured iterations. Results of operations are folded into a sink so that JIT cannot remove them.
+public class Harness {
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+    private final Pattern include;
+    private final List<Result> results = Sugar.list();
+    private long sink;
+
+    public Harness(int warmupIterations, int iterations, long iterationMillis, String include) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1_000_000;
+        this.include = Pattern.compile(null == include ? ".*" : include);
+    }
+
+    public boolean isIncluded(String name) {
+        return include.matcher(name).find();
+    }
+
+    // reset is called before each pass over the inputs and is not measured; operation gets the index of an input
+    public void run(String name, int inputs, Runnable reset, IntToLongFunction operation) {
+        if (!isIncluded(name)) {
+            return;
+        }
+        if (0 == inputs) {
+            System.out.println("# skipping " + name + " since there are no inputs for it");
+            return;
+        }
+        for (int iteration = 0; iteration < warmupIterations; iteration++) {
+            iterate(inputs, reset, operation);
+        }
+        double[] scores = new double[iterations];
+        long operations = 0;
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            long[] measured = iterate(inputs, reset, operation);
+            scores[iteration] = (double) measured[0] / measured[1];
+            operations += measured[1];
+        }
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= iterations;
+        double deviation = 0;
+        for (double score : scores) {
+            deviation += (score - mean) * (score - mean);
+        }
+        deviation = iterations > 1 ? Math.sqrt(deviation / (iterations - 1)) : 0;
+        Result result = new Result(name, mean, deviation, operations);
+        results.add(result);
+        System.out.println(result);
+    }
+
+    // returns the measured nanoseconds and the number of operations
+    private long[] iterate(int inputs, Runnable reset, IntToLongFunction operation) {
+        long nanos = 0;
+        long operations = 0;
+        while (nanos < iterationNanos) {
+            if (null != reset) {
+                reset.run();
+            }
+            long start = System.nanoTime();
+            for (int idx = 0; idx < inputs; idx++) {
+                sink += operation.applyAsLong(idx);
+            }
+            nanos += System.nanoTime() - start;
+            operations += inputs;
+        }
+        return new long[]{nanos, operations};
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    public long getSink() {
+        return sink;
+    }
+
+    public void store(Path baseline) {
+        try {
+            Files.write(baseline, results.stream().map(Result::toString).toList());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // prints the ratio to the baseline for every benchmark present in both, returns the names of those which got slower
+    // by more than the tolerance (e.g. 0.2 stands for 20 %)
+    public List<String> compare(Path baseline, double tolerance) {
+        Map<String, Double> stored = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(baseline)) {
+                if (line.startsWith("#") || line.isBlank()) {
+                    continue;
+                }
+                String[] split = line.split("\t");
+                stored.put(split[0], Double.parseDouble(split[1]));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        List<String> regressions = Sugar.list();
+        for (Result result : results) {
+            Double before = stored.get(result.name);
+            if (null == before) {
+                System.out.println("# " + result.name + " is not in the baseline");
+                continue;
+            }
+            double ratio = result.nanosPerOperation / before;
+            boolean regression = ratio > 1 + tolerance;
+            System.out.println("# " + result.name + "\t" + format(before) + " -> " + format(result.nanosPerOperation)
+                    + " ns/op\t" + String.format(Locale.ROOT, "%.2fx", ratio) + (regression ? "\tREGRESSION" : ""));
+            if (regression) {
+                regressions.add(result.name);
+            }
+        }
+        return regressions;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    public static class Result {
+        private final String name;
+        private final double nanosPerOperation;
+        private final double deviation;
+        private final long operations;
+
+        private Result(String name, double nanosPerOperation, double deviation, long operations) {
+            this.name = name;
+            this.nanosPerOperation = nanosPerOperation;
+            this.deviation = deviation;
+            this.operations = operations;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getNanosPerOperation() {
+            return nanosPerOperation;
+        }
+
+        // name, ns/op, standard deviation among iterations, number of measured operations
+        @Override
+        public String toString() {
+            return name + "\t" + format(nanosPerOperation) + "\t" + format(deviation) + "\t" + operations;
+        }
+    }
+}
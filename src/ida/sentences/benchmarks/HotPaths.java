@@ -0,0 +1,256 @@
+package ida.sentences.benchmarks;
+
+import ida.cellGraphs.CanonicalFilter;
+import ida.hypergraphIsomorphism.ConcurrentIsoHandler;
+import ida.ilp.logic.Clause;
+import ida.ilp.logic.special.IsoClauseWrapper;
+import ida.ilp.logic.subsumption.Matching;
+import ida.sentences.SentenceFinder;
+import ida.sentences.SentenceSetup;
+import ida.sentences.SentenceState;
+import ida.sentences.caches.CannonCache;
+import ida.sentences.caches.LiteralsCache;
+import ida.sentences.filters.JoiningFilter;
+import ida.sentences.generators.ClausesGenerator;
+import ida.sentences.generators.LiteralsGenerator;
+import ida.utils.Sugar;
+import ida.utils.collections.MultiList;
+import ida.utils.tuples.Pair;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+// Benchmarks of the canonicalization and pruning hot paths on sentences of a stored search (by default one of the
+// experiments/run5 outputs). The setup of the search is taken from the setup line of the corpus, so joining filters are
+// the very same as in the run which produced it.
+public class HotPaths {
+
+    private static final String DEFAULT_CORPUS = "experiments/run5/c33-order4-3-3-9-2-2-1/9baseline_decomposable_proving_isoSent_isoNeg_permArg_reflexAtoms_trivialConstraints_subsumption_quantifiers.txt";
+
+    private final Harness harness;
+    private final SentenceSetup setup;
+    private final List<String> corpus;
+    private final long seed;
+
+    public HotPaths(Harness harness, SentenceSetup setup, List<String> corpus, long seed) {
+        this.harness = harness;
+        this.setup = setup;
+        this.corpus = corpus;
+        this.seed = seed;
+    }
+
+    public void run(Path cellGraphs) {
+        SentenceFinder finder = new SentenceFinder(setup);
+        Pair<List<Clause>, ClausesGenerator> init = finder.initForQueries();
+        List<Clause> basis = init.getR();
+        List<SentenceState> sentences = toBasisSentences(basis);
+        System.out.println("# " + sentences.size() + " out of " + corpus.size() + " sentences consist of " + basis.size() + " basis clauses");
+        ultraCannonic(sentences);
+        icw(sentences);
+        isomorphism(sentences);
+        isoHandler(sentences);
+        joiningFilters(finder.getJoiningFilters(init.getS(), setup), sentences, basis);
+        canonicalCellGraphs(cellGraphs);
+    }
+
+    // sentences are made of the basis clauses, as in the search, since e.g. some filters work with clause ids
+    private List<SentenceState> toBasisSentences(List<Clause> basis) {
+        Map<String, Clause> byCannonic = new HashMap<>();
+        basis.forEach(clause -> byCannonic.put(clause.getCannonic(), clause));
+        List<SentenceState> sentences = Sugar.list();
+        for (String line : corpus) {
+            List<Clause> clauses = Sugar.list();
+            for (Clause clause : SentenceState.parse(line, setup).clauses) {
+                Clause known = byCannonic.get(clause.getCannonic());
+                if (null == known) {
+                    clauses = null;
+                    break;
+                }
+                clauses.add(known);
+            }
+            if (null != clauses) {
+                sentences.add(new SentenceState(clauses, setup));
+            }
+        }
+        return sentences;
+    }
+
+    private void ultraCannonic(List<SentenceState> sentences) {
+        harness.run("SentenceState.getUltraCannonic", sentences.size(), () -> CannonCache.getInstance().clear(), idx -> {
+            SentenceState sentence = sentences.get(idx);
+            sentence.freeMemory();
+            return sentence.getUltraCannonic().length();
+        });
+        // a parent followed by its child with one more clause, as in the search
+        List<SentenceState> parents = Sugar.list();
+        List<SentenceState> children = Sugar.list();
+        for (SentenceState sentence : sentences) {
+            if (sentence.clauses.size() > 1) {
+                parents.add(new SentenceState(sentence.clauses.subList(0, sentence.clauses.size() - 1), setup));
+                children.add(sentence);
+            }
+        }
+        harness.run("SentenceState.getUltraCannonic/child", parents.size(), () -> CannonCache.getInstance().clear(), idx -> {
+            parents.get(idx).freeMemory();
+            children.get(idx).freeMemory();
+            return parents.get(idx).getUltraCannonic().length() + children.get(idx).getUltraCannonic().length();
+        });
+    }
+
+    private void icw(List<SentenceState> sentences) {
+        LiteralsCache[] cache = new LiteralsCache[1];
+        harness.run("SentenceState.getICW", sentences.size(), () -> cache[0] = LiteralsCache.getLayer(), idx -> {
+            SentenceState sentence = sentences.get(idx);
+            sentence.freeMemory();
+            return sentence.getICW(cache[0]).hashCode();
+        });
+    }
+
+    private void isomorphism(List<SentenceState> sentences) {
+        if (!harness.isIncluded("Matching.isomorphism/isomorphic") && !harness.isIncluded("Matching.isomorphism/sameHash")) {
+            return;
+        }
+        LiteralsCache cache = LiteralsCache.getLayer();
+        // isomorphic pairs are sentences against themselves with the reversed order of clauses, i.e. differently named ICW variables
+        List<Pair<Clause, Clause>> isomorphic = Sugar.list();
+        MultiList<Integer, Clause> byHash = new MultiList<>();
+        for (SentenceState sentence : sentences) {
+            sentence.freeMemory();
+            IsoClauseWrapper icw = sentence.getICW(cache);
+            List<Clause> reversed = Sugar.listFromCollections(sentence.clauses);
+            Collections.reverse(reversed);
+            isomorphic.add(new Pair<>(icw.getOriginalClause(), new SentenceState(reversed, setup).getICW(cache).getOriginalClause()));
+            byHash.put(icw.hashCode(), icw.getOriginalClause());
+        }
+        // the corpus contains no two isomorphic sentences, so these are the costly refutations that hashing cannot decide
+        List<Pair<Clause, Clause>> sameHash = Sugar.list();
+        for (List<Clause> clauses : byHash.values()) {
+            for (int first = 0; first < clauses.size(); first++) {
+                for (int second = first + 1; second < clauses.size(); second++) {
+                    sameHash.add(new Pair<>(clauses.get(first), clauses.get(second)));
+                }
+            }
+        }
+        Matching matching = new Matching();
+        harness.run("Matching.isomorphism/isomorphic", isomorphic.size(), null,
+                idx -> matching.isomorphism(isomorphic.get(idx).getR(), isomorphic.get(idx).getS()) ? 1 : 0);
+        harness.run("Matching.isomorphism/sameHash", sameHash.size(), null,
+                idx -> matching.isomorphism(sameHash.get(idx).getR(), sameHash.get(idx).getS()) ? 1 : 0);
+    }
+
+    private void isoHandler(List<SentenceState> sentences) {
+        if (!harness.isIncluded("ConcurrentIsoHandler.contains/insert") && !harness.isIncluded("ConcurrentIsoHandler.contains/hit")) {
+            return;
+        }
+        LiteralsCache cache = LiteralsCache.getLayer();
+        List<IsoClauseWrapper> icws = Sugar.list();
+        List<IsoClauseWrapper> copies = Sugar.list();
+        for (SentenceState sentence : sentences) {
+            sentence.freeMemory();
+            icws.add(sentence.getICW(cache));
+            copies.add(new SentenceState(Sugar.listFromCollections(sentence.clauses), setup).getICW(cache));
+        }
+        ConcurrentIsoHandler[] handler = new ConcurrentIsoHandler[1];
+        harness.run("ConcurrentIsoHandler.contains/insert", icws.size(), () -> handler[0] = new ConcurrentIsoHandler(),
+                idx -> null == handler[0].contains(icws.get(idx)) ? 0 : 1);
+        ConcurrentIsoHandler filled = new ConcurrentIsoHandler();
+        icws.forEach(filled::contains);
+        harness.run("ConcurrentIsoHandler.contains/hit", copies.size(), null,
+                idx -> null == filled.contains(copies.get(idx)) ? 0 : 1);
+    }
+
+    private void joiningFilters(List<JoiningFilter> filters, List<SentenceState> sentences, List<Clause> basis) {
+        if (sentences.isEmpty()) {
+            return;
+        }
+        Random random = new Random(seed);
+        int pairs = Math.min(100_000, sentences.size() * basis.size());
+        List<SentenceState> alphas = Sugar.list();
+        List<Clause> betas = Sugar.list();
+        for (int idx = 0; idx < pairs; idx++) {
+            alphas.add(sentences.get(random.nextInt(sentences.size())));
+            betas.add(basis.get(random.nextInt(basis.size())));
+        }
+        for (JoiningFilter filter : filters) {
+            String name = "JoiningFilter." + filter.getName();
+            if (!harness.isIncluded(name)) {
+                continue;
+            }
+            long passed = 0;
+            for (int idx = 0; idx < pairs; idx++) {
+                passed += filter.test(alphas.get(idx), betas.get(idx)) ? 1 : 0;
+            }
+            System.out.println("# " + filter.getName() + " passes " + passed + " out of " + pairs + " pairs");
+            harness.run(name, pairs, null, idx -> filter.test(alphas.get(idx), betas.get(idx)) ? 1 : 0);
+        }
+    }
+
+    private void canonicalCellGraphs(Path cellGraphs) {
+        if (!harness.isIncluded("CanonicalFilter.toCanonical")) {
+            return;
+        }
+        if (null == cellGraphs) {
+            System.out.println("# skipping CanonicalFilter.toCanonical since there is no file with cell-graphs (ida.benchmark.cellGraphs)");
+            return;
+        }
+        List<String> lines = load(cellGraphs).stream().map(line -> line.startsWith("[") ? line.substring(1, line.length() - 1) : line).toList();
+        CanonicalFilter filter = CanonicalFilter.create(setup);
+        harness.run("CanonicalFilter.toCanonical", lines.size(), null, idx -> filter.toCanonical(lines.get(idx)).length());
+    }
+
+    private static List<String> load(Path file) {
+        try {
+            return Files.readAllLines(file).stream().map(String::strip).filter(line -> !line.isEmpty() && !line.startsWith("#")).toList();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void main(String[] args) {
+        Path corpusFile = Paths.get(System.getProperty("ida.benchmark.corpus", DEFAULT_CORPUS));
+        int limit = Integer.parseInt(System.getProperty("ida.benchmark.sentences", "2000"));
+        long seed = Long.parseLong(System.getProperty("ida.benchmark.seed", "7"));
+        String cellGraphs = System.getProperty("ida.benchmark.cellGraphs", null);
+        String baseline = System.getProperty("ida.benchmark.baseline", null);
+        double tolerance = Double.parseDouble(System.getProperty("ida.benchmark.tolerance", "0.2"));
+        Harness harness = new Harness(Integer.parseInt(System.getProperty("ida.benchmark.warmup", "5")),
+                Integer.parseInt(System.getProperty("ida.benchmark.iterations", "10")),
+                Long.parseLong(System.getProperty("ida.benchmark.iterationMillis", "500")),
+                System.getProperty("ida.benchmark.include", null));
+
+        String setupLine;
+        try (var lines = Files.lines(corpusFile)) {
+            setupLine = lines.filter(line -> line.startsWith("# starting search with setup:")).findFirst()
+                    .orElseThrow(() -> new IllegalStateException("There is no setup line in " + corpusFile));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        SentenceSetup setup = SentenceSetup.createFromSetupLine(setupLine);
+        LiteralsGenerator.generate(setup.variables, setup.predicates); // intertwined literals have to exist before parsing
+        // a deterministic sample spread over all layers of the corpus
+        List<String> corpus = Sugar.listFromCollections(load(corpusFile));
+        Collections.shuffle(corpus, new Random(seed));
+        corpus = corpus.subList(0, Math.min(limit, corpus.size()));
+        System.out.println("# benchmarking on " + corpus.size() + " sentences from " + corpusFile);
+
+        new HotPaths(harness, setup, corpus, seed).run(null == cellGraphs ? null : Paths.get(cellGraphs));
+        System.out.println("# sink " + harness.getSink());
+
+        if (null != baseline) {
+            Path baselineFile = Paths.get(baseline);
+            if (!Files.exists(baselineFile)) {
+                harness.store(baselineFile);
+                System.out.println("# baseline stored to " + baselineFile);
+            } else {
+                List<String> regressions = harness.compare(baselineFile, tolerance);
+                if (!regressions.isEmpty()) {
+                    System.out.println("# regressions: " + String.join(", ", regressions));
+                    System.exit(1);
+                }
+            }
+        }
+    }
+}
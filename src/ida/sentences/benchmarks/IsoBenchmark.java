@@ -0,0 +1,81 @@
+package ida.sentences.benchmarks;
+
+import ida.hypergraphIsomorphism.ConcurrentIsoHandler;
+import ida.ilp.logic.Clause;
+import ida.ilp.logic.special.IsoClauseWrapper;
+import ida.ilp.logic.special.IsoStrategy;
+import ida.sentences.SentenceState;
+import ida.sentences.caches.LiteralsCache;
+import ida.sentences.metrics.MetricsLog;
+import ida.utils.Sugar;
+import ida.utils.collections.Counters;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Self-benchmark of isomorphism strategies within a running search: the candidates of a layer are pruned by each of the
+// strategies in turn, on a single thread and aside from the search itself. Each strategy reports its time per sentence
+// (wrapping and the lookup, not the representation shared by all), the number of isomorphism classes, and the sizes of
+// its hash buckets, i.e. how many sentences share a hash code; the larger the buckets, the more pairwise checks. Large
+// layers are sampled evenly, since every strategy keeps the wrappers of all of its sentences till it is done.
+public class IsoBenchmark {
+
+    private static final int MAX_SENTENCES = 20_000;
+
+    private final List<IsoStrategy> strategies;
+    private final MetricsLog metrics;
+
+    public IsoBenchmark(List<IsoStrategy> strategies, MetricsLog metrics) {
+        this.strategies = strategies;
+        this.metrics = metrics;
+    }
+
+    public void run(int layer, List<SentenceState> sentences) {
+        LiteralsCache cache = LiteralsCache.getLayer();
+        int stride = (sentences.size() + MAX_SENTENCES - 1) / MAX_SENTENCES;
+        List<Clause> representations = IntStream.range(0, sentences.size())
+                .filter(idx -> idx % stride == 0)
+                .mapToObj(idx -> sentences.get(idx).getRepresentation(cache))
+                .collect(Collectors.toList());
+        for (IsoStrategy strategy : strategies) {
+            ConcurrentIsoHandler handler = new ConcurrentIsoHandler();
+            Counters<Integer> byHash = new Counters<>();
+            long start = System.nanoTime();
+            for (Clause representation : representations) {
+                IsoClauseWrapper icw = strategy.wrap(representation);
+                handler.contains(icw);
+                byHash.increment(icw.hashCode());
+            }
+            long elapsed = System.nanoTime() - start;
+            // the representations carry no sentence, so classes are counted from the buckets rather than from witnesses
+            int classes = handler.entrySet().stream().mapToInt(entry -> entry.getValue().size()).sum();
+            TreeMap<Integer, Integer> buckets = new TreeMap<>(); // size of a bucket -> number of such buckets
+            byHash.counts().forEach(size -> buckets.merge(size, 1, Integer::sum));
+            long perSentence = representations.isEmpty() ? 0 : elapsed / representations.size();
+            printComment("iso benchmark of layer " + layer + " with " + strategy.getName() + ": "
+                    + String.format("%.1f", perSentence / 1000.0) + " us per sentence, " + classes + " classes out of "
+                    + representations.size() + (1 == stride ? "" : " (every " + stride + "-th)") + ", buckets [" + toString(buckets) + "]");
+            metrics.record("isoBenchmark")
+                    .put("layer", layer)
+                    .put("strategy", strategy.getName())
+                    .put("sentences", representations.size())
+                    .put("classes", classes)
+                    .put("nsPerSentence", perSentence)
+                    .put("maxBucket", buckets.isEmpty() ? 0 : buckets.lastKey())
+                    .write();
+        }
+    }
+
+    private static String toString(Map<Integer, Integer> buckets) {
+        List<String> entries = Sugar.list();
+        buckets.forEach((size, count) -> entries.add(size + ":" + count));
+        return String.join(", ", entries);
+    }
+
+    private static void printComment(String message) {
+        System.out.println("# " + message);
+    }
+}
@@ -0,0 +1,87 @@
+package ida.sentences.caches;
+
+import ida.ilp.logic.Clause;
+import ida.ilp.logic.Literal;
+import ida.ilp.logic.Predicate;
+import ida.sentences.Configuration;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Minimal configurations of single clauses found by SentenceState.generateAllMinimals, keyed by the clause as it looks
+// under the predicate mapping, negation swaps and direction flips chosen so far, and by the free predicates. The stored
+// configurations are deltas (predicates mapped, negations swapped and directions flipped by that clause only), so they
+// apply to the clause in any sentence. A child shares all but its last clause with its parent, hence the choices for the
+// shared clauses are mostly known from the parent (or a sibling). The cache is dropped as a whole when full.
+public class CannonCache {
+
+    private static final CannonCache cache = new CannonCache();
+
+    private final ConcurrentHashMap<Key, List<Configuration>> minimals = new ConcurrentHashMap<>();
+
+    public static CannonCache getInstance() {
+        return cache;
+    }
+
+    // null if not known
+    public List<Configuration> get(Key key) {
+        return minimals.get(key);
+    }
+
+    public void put(Key key, List<Configuration> choices, int maxSize) {
+        if (minimals.size() >= maxSize) {
+            minimals.clear();
+        }
+        minimals.putIfAbsent(key, List.copyOf(choices));
+    }
+
+    public void clear() {
+        minimals.clear();
+    }
+
+    public int size() {
+        return minimals.size();
+    }
+
+    // Unlike getCannonic, the quantifier is not mirrored since choices made on a clause differ from those on its mirror.
+    // Free predicates are sublists of the sorted predicates of the setup, so they are compared as they are, without
+    // copying.
+    public static Key key(Clause clause, List<Predicate> freeUnary, List<Predicate> freeBinary) {
+        return new Key(null == clause.getQuantifier() ? "" : clause.getQuantifier().getPrefix(), Set.copyOf(clause.literals()), freeUnary, freeBinary);
+    }
+
+    public static final class Key {
+        private final String prefix;
+        private final Set<Literal> literals;
+        private final List<Predicate> freeUnary;
+        private final List<Predicate> freeBinary;
+        private final int hashCode;
+
+        private Key(String prefix, Set<Literal> literals, List<Predicate> freeUnary, List<Predicate> freeBinary) {
+            this.prefix = prefix;
+            this.literals = literals;
+            this.freeUnary = freeUnary;
+            this.freeBinary = freeBinary;
+            this.hashCode = 31 * (31 * (31 * prefix.hashCode() + literals.hashCode()) + freeUnary.hashCode()) + freeBinary.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode && prefix.equals(other.prefix) && literals.equals(other.literals)
+                    && freeUnary.equals(other.freeUnary) && freeBinary.equals(other.freeBinary);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package ida.sentences.caches;
+
+import ida.ilp.logic.Literal;
+import ida.ilp.logic.Term;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Hash-consing of literals: a literal is keyed by the ids of its predicate, sign and arguments, i.e. an int array, and
+// gets a dense id on its first insertion. Predicates and terms get their ids from concurrent maps, which are read without
+// locking, and the keys live in an open-addressing table published through a volatile field; entries are immutable, so a
+// lookup of a known literal neither locks nor builds a String. Insertions (and growing of the table) are serialized and
+// check the table again, so a key never maps to two literals.
+public class LiteralTable {
+
+    private static final int INITIAL_CAPACITY = 1 << 10; // power of two
+
+    private final ConcurrentHashMap<String, Integer> predicates = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Term, Integer> terms = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+    private volatile int size;
+
+    private static final class Entry {
+        private final int[] key;
+        private final int hash;
+        private final Literal literal;
+        private final int id;
+
+        private Entry(int[] key, int hash, Literal literal, int id) {
+            this.key = key;
+            this.hash = hash;
+            this.literal = literal;
+            this.id = id;
+        }
+    }
+
+    // the literal stored under the key of the given one; the given one is stored if there is none yet
+    public Literal get(Literal literal) {
+        return intern(literal.predicate(), literal.isNegated(), literal.arguments(), literal).literal;
+    }
+
+    // the literal stored under the given key; a new one is constructed and stored if there is none yet
+    public Literal get(String predicate, boolean negated, Term[] arguments) {
+        return intern(predicate, negated, arguments, null).literal;
+    }
+
+    // dense id of the literal, in order of insertions (the literal is stored if it is not yet)
+    public int id(Literal literal) {
+        return intern(literal.predicate(), literal.isNegated(), literal.arguments(), literal).id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        synchronized (lock) {
+            predicates.clear();
+            terms.clear();
+            table = new Entry[INITIAL_CAPACITY];
+            size = 0;
+        }
+    }
+
+    private Entry intern(String predicate, boolean negated, Term[] arguments, Literal literal) {
+        int[] key = key(predicate, negated, arguments);
+        if (null != key) {
+            Entry entry = find(table, key, hash(key));
+            if (null != entry) {
+                return entry;
+            }
+        }
+        synchronized (lock) {
+            key = internKey(predicate, negated, arguments);
+            int hash = hash(key);
+            Entry entry = find(table, key, hash);
+            if (null == entry) {
+                entry = new Entry(key, hash, null == literal ? new Literal(predicate, negated, arguments) : literal, size);
+                insert(entry);
+            }
+            return entry;
+        }
+    }
+
+    // null if the predicate or some of the arguments have no id yet, so there can be no such literal
+    private int[] key(String predicate, boolean negated, Term[] arguments) {
+        Integer predicateId = predicates.get(predicate);
+        if (null == predicateId) {
+            return null;
+        }
+        int[] key = new int[1 + arguments.length];
+        key[0] = predicateId << 1 | (negated ? 1 : 0);
+        for (int i = 0; i < arguments.length; i++) {
+            Integer termId = terms.get(arguments[i]);
+            if (null == termId) {
+                return null;
+            }
+            key[i + 1] = termId;
+        }
+        return key;
+    }
+
+    // called under the lock only
+    private int[] internKey(String predicate, boolean negated, Term[] arguments) {
+        int[] key = new int[1 + arguments.length];
+        key[0] = predicates.computeIfAbsent(predicate, p -> predicates.size()) << 1 | (negated ? 1 : 0);
+        for (int i = 0; i < arguments.length; i++) {
+            key[i + 1] = terms.computeIfAbsent(arguments[i], t -> terms.size());
+        }
+        return key;
+    }
+
+    private static Entry find(Entry[] table, int[] key, int hash) {
+        int mask = table.length - 1;
+        for (int idx = hash & mask; ; idx = (idx + 1) & mask) {
+            Entry entry = table[idx];
+            if (null == entry) {
+                return null;
+            }
+            if (entry.hash == hash && Arrays.equals(entry.key, key)) {
+                return entry;
+            }
+        }
+    }
+
+    // called under the lock only; the table is at most half full, and a grown one is filled before it is published
+    private void insert(Entry entry) {
+        Entry[] current = table;
+        if (2 * (size + 1) > current.length) {
+            Entry[] grown = new Entry[2 * current.length];
+            for (Entry old : current) {
+                if (null != old) {
+                    place(grown, old);
+                }
+            }
+            place(grown, entry);
+            table = grown;
+        } else {
+            place(current, entry);
+        }
+        size++;
+    }
+
+    private static void place(Entry[] table, Entry entry) {
+        int mask = table.length - 1;
+        int idx = entry.hash & mask;
+        while (null != table[idx]) {
+            idx = (idx + 1) & mask;
+        }
+        table[idx] = entry;
+    }
+
+    private static int hash(int[] key) {
+        int hash = 0x9E3779B9;
+        for (int value : key) {
+            hash = (hash ^ value) * 0x01000193;
+        }
+        // the finalizer of MurmurHash3, so that the low bits used for slots depend on all of the key
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
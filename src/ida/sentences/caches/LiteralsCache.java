@@ -1,13 +1,16 @@
 package ida.sentences.caches;
 
 import ida.ilp.logic.Term;
-import ida.utils.Cache;
 import ida.ilp.logic.Literal;
 
-public class LiteralsCache extends Cache<String, Literal> {
+// literals are hash-consed by the ids of their parts (see LiteralTable), so lookups from parallel canonicalizations
+// neither build Strings nor contend on a monitor
+public class LiteralsCache {
 
     private static LiteralsCache cache = new LiteralsCache();
 
+    private final LiteralTable table = new LiteralTable();
+
     public static LiteralsCache getInstance() {
         return cache;
     }
@@ -17,27 +20,22 @@ public class LiteralsCache extends Cache<String, Literal> {
     }
 
     public Literal get(Literal literal) {
-        synchronized (this) {
-            if (null == get(literal.toString())) {
-                put(literal.toString(), literal);
-            }
-            return get(literal.toString());
-        }
+        return table.get(literal);
     }
 
     public Literal constructAndGet(String predicate, boolean negated, Term[] arguments) {
-        String string = Literal.toString(predicate, negated, arguments, Literal.negationSign);
-        synchronized (this) {
-            Literal literal = get(string);
-            if (null == literal) {
-                literal = new Literal(predicate, negated, arguments);
-                put(string, literal);
-            }
-            return literal;
-        }
+        return table.get(predicate, negated, arguments);
+    }
+
+    public int id(Literal literal) {
+        return table.id(literal);
+    }
+
+    public int size() {
+        return table.size();
     }
 
     public void forget() {
-        this.clear();
+        table.clear();
     }
 }
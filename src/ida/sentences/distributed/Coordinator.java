@@ -0,0 +1,188 @@
+package ida.sentences.distributed;
+
+import ida.sentences.SentenceSetup;
+import ida.utils.Sugar;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Starts worker JVMs of the distributed BFS and collects their layers. Workers are started with the same JVM arguments
+// as this process plus their id and the shared directory; the directory is removed at the end.
+public class Coordinator {
+
+    private static final String STARTING_POINT = "start.ckpt";
+
+    private final SentenceSetup setup;
+    private final Path directory;
+    private final List<Process> workers = Sugar.list();
+
+    private Coordinator(SentenceSetup setup, Path directory) {
+        this.setup = setup;
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // the checkpoint from which all workers start, i.e. the clause basis and the seed
+    public Path getStartingPoint() {
+        return startingPoint(directory);
+    }
+
+    public void start() {
+        List<String> command = Sugar.list(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-Dida.sentenceSetup.workDir=" + directory);
+        int arguments = command.size();
+        String main = System.getProperty("sun.java.command").split(" ")[0];
+        List<String> program = main.endsWith(".jar")
+                ? Sugar.list("-jar", main)
+                : Sugar.list("-cp", System.getProperty("java.class.path"), main);
+        for (int workerId = 0; workerId < setup.workers; workerId++) {
+            List<String> workerCommand = Sugar.listFromCollections(command.subList(0, arguments));
+            workerCommand.add("-Dida.sentenceSetup.workerId=" + workerId);
+            workerCommand.addAll(program);
+            try {
+                workers.add(new ProcessBuilder(workerCommand)
+                        .redirectErrorStream(true)
+                        .redirectOutput(directory.resolve("worker" + workerId + ".log").toFile())
+                        .start());
+            } catch (IOException e) {
+                stop();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    public LayerReport awaitLayer(int level) {
+        Exchange.await(directory, Exchange.layerPhase(level), setup.workers, this::allAlive);
+        LayerReport report = new LayerReport();
+        try {
+            for (int workerId = 0; workerId < setup.workers; workerId++) {
+                Path file = Exchange.reportFile(directory, level, workerId);
+                try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+                    report.add(LayerReport.read(in));
+                }
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return report;
+    }
+
+    // k-way merge of the sorted outputs of workers, so the layer is printed in the same order as by a single process
+    public void merge(int level, Consumer<String> printer) {
+        List<BufferedReader> readers = Sugar.list();
+        PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparing((Head head) -> head.line));
+        try {
+            for (int workerId = 0; workerId < setup.workers; workerId++) {
+                BufferedReader reader = Files.newBufferedReader(Exchange.outputFile(directory, level, workerId));
+                readers.add(reader);
+                String line = reader.readLine();
+                if (null != line) {
+                    heads.add(new Head(line, reader));
+                }
+            }
+            while (!heads.isEmpty()) {
+                Head head = heads.poll();
+                printer.accept(head.line);
+                String line = head.reader.readLine();
+                if (null != line) {
+                    heads.add(new Head(line, head.reader));
+                }
+            }
+            for (BufferedReader reader : readers) {
+                reader.close();
+            }
+            for (int workerId = 0; workerId < setup.workers; workerId++) {
+                Files.delete(Exchange.outputFile(directory, level, workerId));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void next(int level, boolean proceed) {
+        try {
+            if (proceed) {
+                Files.createFile(directory.resolve(Exchange.nextPhase(level) + ".continue"));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        Exchange.mark(directory, Exchange.nextPhase(level), 0);
+    }
+
+    // waits for workers to end and removes the shared directory
+    public void finish() {
+        for (int workerId = 0; workerId < workers.size(); workerId++) {
+            try {
+                int exitCode = workers.get(workerId).waitFor();
+                if (0 != exitCode) {
+                    throw new IllegalStateException("Worker " + workerId + " has ended with exit code " + exitCode + ", see its log in " + directory);
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+            Files.delete(directory);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private boolean allAlive() {
+        for (int workerId = 0; workerId < workers.size(); workerId++) {
+            Process worker = workers.get(workerId);
+            if (!worker.isAlive() && 0 != worker.exitValue()) {
+                stop();
+                throw new IllegalStateException("Worker " + workerId + " has ended with exit code " + worker.exitValue() + ", see its log in " + directory);
+            }
+        }
+        return true;
+    }
+
+    private void stop() {
+        workers.forEach(Process::destroyForcibly);
+    }
+
+    public static Path startingPoint(Path directory) {
+        return directory.resolve(STARTING_POINT);
+    }
+
+    // a fresh directory in setup.workDir (or in the default temporary directory)
+    public static Coordinator create(SentenceSetup setup) {
+        try {
+            Path directory = null == setup.workDir
+                    ? Files.createTempDirectory("sfinder")
+                    : Files.createTempDirectory(Files.createDirectories(Paths.get(setup.workDir)), "sfinder");
+            return new Coordinator(setup, directory);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class Head {
+        private final String line;
+        private final BufferedReader reader;
+
+        private Head(String line, BufferedReader reader) {
+            this.line = line;
+            this.reader = reader;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ida.sentences.distributed;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+// All-to-all exchange of records among worker processes through files in a shared directory. Each worker writes one file
+// per receiver and then an empty marker; nobody reads a phase before all markers of that phase exist.
+public class Exchange {
+
+    private static final long POLLING_MILLIS = 5;
+
+    private final Path directory;
+    private final int workers;
+    private final int workerId;
+
+    public Exchange(Path directory, int workers, int workerId) {
+        this.directory = directory;
+        this.workers = workers;
+        this.workerId = workerId;
+    }
+
+    public interface RecordWriter<T> {
+        void write(DataOutputStream out, T record) throws IOException;
+    }
+
+    public interface RecordReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    // outgoing.get(i) goes to the i-th worker; the result contains records from all workers, ordered by the sender
+    public <T> List<T> allToAll(String phase, List<List<T>> outgoing, RecordWriter<T> writer, RecordReader<T> reader) {
+        if (outgoing.size() != workers) {
+            throw new IllegalStateException("There should be a list of records for each of " + workers + " workers.");
+        }
+        try {
+            for (int receiver = 0; receiver < workers; receiver++) {
+                List<T> records = outgoing.get(receiver);
+                Path tmp = directory.resolve(phase + "." + workerId + "." + receiver + ".tmp");
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                    out.writeInt(records.size());
+                    for (T record : records) {
+                        writer.write(out, record);
+                    }
+                }
+                Files.move(tmp, directory.resolve(phase + "." + workerId + "." + receiver + ".bin"), StandardCopyOption.ATOMIC_MOVE);
+            }
+            mark(directory, phase, workerId);
+            await(directory, phase, workers, Exchange::coordinatorAlive);
+
+            List<T> retVal = new ArrayList<>();
+            for (int sender = 0; sender < workers; sender++) {
+                Path file = directory.resolve(phase + "." + sender + "." + workerId + ".bin");
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+                    int size = in.readInt();
+                    for (int idx = 0; idx < size; idx++) {
+                        retVal.add(reader.read(in));
+                    }
+                }
+                Files.delete(file);
+            }
+            return retVal;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // hands the sorted output and the counts of a finished layer over to the coordinator
+    public void finishLayer(int level, LayerReport report, List<String> printed) {
+        try {
+            Path tmp = directory.resolve("out." + level + "." + workerId + ".tmp");
+            Files.write(tmp, printed);
+            Files.move(tmp, outputFile(directory, level, workerId), StandardCopyOption.ATOMIC_MOVE);
+            tmp = directory.resolve("report." + level + "." + workerId + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+                report.write(out);
+            }
+            Files.move(tmp, reportFile(directory, level, workerId), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        mark(directory, layerPhase(level), workerId);
+    }
+
+    // returns false if the coordinator has decided to stop the search after the given layer
+    public boolean awaitNext(int level) {
+        await(directory, nextPhase(level), 1, Exchange::coordinatorAlive);
+        return Files.exists(directory.resolve(nextPhase(level) + ".continue"));
+    }
+
+    static String layerPhase(int level) {
+        return "layer" + level;
+    }
+
+    static String nextPhase(int level) {
+        return "next" + level;
+    }
+
+    static Path outputFile(Path directory, int level, int workerId) {
+        return directory.resolve("out." + level + "." + workerId + ".txt");
+    }
+
+    static Path reportFile(Path directory, int level, int workerId) {
+        return directory.resolve("report." + level + "." + workerId + ".bin");
+    }
+
+    public static void mark(Path directory, String phase, int workerId) {
+        try {
+            Files.createFile(directory.resolve(phase + "." + workerId + ".done"));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // waits till all workers have marked the phase; alive is checked in between so that nobody waits for a dead process
+    public static void await(Path directory, String phase, int workers, BooleanSupplier alive) {
+        int marked = 0;
+        while (marked < workers) {
+            if (Files.exists(directory.resolve(phase + "." + marked + ".done"))) {
+                marked++;
+                continue;
+            }
+            if (!alive.getAsBoolean()) {
+                throw new IllegalStateException("A process of the distributed search has ended while waiting for " + phase + ".");
+            }
+            try {
+                Thread.sleep(POLLING_MILLIS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    public static void writeIds(DataOutputStream out, int[] ids) throws IOException {
+        out.writeInt(ids.length);
+        for (int id : ids) {
+            out.writeInt(id);
+        }
+    }
+
+    public static int[] readIds(DataInputStream in) throws IOException {
+        int[] ids = new int[in.readInt()];
+        for (int idx = 0; idx < ids.length; idx++) {
+            ids[idx] = in.readInt();
+        }
+        return ids;
+    }
+
+    private static boolean coordinatorAlive() {
+        return ProcessHandle.current().parent().map(ProcessHandle::isAlive).orElse(false);
+    }
+}
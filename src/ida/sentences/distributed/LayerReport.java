@@ -0,0 +1,49 @@
+package ida.sentences.distributed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// counts of a single BFS layer as seen by one worker; times are in nanoseconds
+public class LayerReport {
+
+    public long raw;
+    public long afterPruning;
+    public long hiddenByFilters;
+    public long hiddenByCellGraphs;
+    public long printed;
+    public long generation;
+    public long pruning;
+    public long filtering;
+
+    // counts are summed up while times are the maximum over workers since the workers run side by side
+    public void add(LayerReport other) {
+        raw += other.raw;
+        afterPruning += other.afterPruning;
+        hiddenByFilters += other.hiddenByFilters;
+        hiddenByCellGraphs += other.hiddenByCellGraphs;
+        printed += other.printed;
+        generation = Math.max(generation, other.generation);
+        pruning = Math.max(pruning, other.pruning);
+        filtering = Math.max(filtering, other.filtering);
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        for (long value : new long[]{raw, afterPruning, hiddenByFilters, hiddenByCellGraphs, printed, generation, pruning, filtering}) {
+            out.writeLong(value);
+        }
+    }
+
+    public static LayerReport read(DataInputStream in) throws IOException {
+        LayerReport report = new LayerReport();
+        report.raw = in.readLong();
+        report.afterPruning = in.readLong();
+        report.hiddenByFilters = in.readLong();
+        report.hiddenByCellGraphs = in.readLong();
+        report.printed = in.readLong();
+        report.generation = in.readLong();
+        report.pruning = in.readLong();
+        report.filtering = in.readLong();
+        return report;
+    }
+}
@@ -0,0 +1,108 @@
+package ida.sentences.filters;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Evaluation order of a conjunction of filters learned at runtime. One in SAMPLING evaluations (on average) measures the
+// time and rejections of the filters it runs; after every REORDER_SAMPLES of such evaluations, filters are sorted by the
+// expected cost per rejection, i.e. mean time divided by rejection rate. Since evaluation short-circuits, statistics of
+// a filter are conditioned on the preceding ones passing, which is the situation it is evaluated in. The result of the
+// conjunction does not depend on the order as long as filters have no side effects (logging filters have, hence no
+// adaptive order in debug mode).
+public class AdaptiveOrder<F> {
+
+    private static final int SAMPLING = 32;
+    private static final int REORDER_SAMPLES = 1024;
+    private static final double MIN_REJECTION_RATE = 1e-4;
+
+    private final List<F> filters;
+    private final LongAdder[] evaluations;
+    private final LongAdder[] rejections;
+    private final LongAdder[] nanos;
+    private final AtomicLong samples = new AtomicLong();
+    private volatile int[] order;
+
+    public AdaptiveOrder(List<F> filters) {
+        this.filters = filters;
+        this.evaluations = adders(filters.size());
+        this.rejections = adders(filters.size());
+        this.nanos = adders(filters.size());
+        this.order = IntStream.range(0, filters.size()).toArray();
+    }
+
+    // true iff all filters pass
+    public boolean test(Predicate<F> passes) {
+        int[] current = order;
+        if (0 != ThreadLocalRandom.current().nextInt(SAMPLING)) {
+            for (int idx : current) {
+                if (!passes.test(filters.get(idx))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        boolean retVal = true;
+        for (int idx : current) {
+            long start = System.nanoTime();
+            boolean passed = passes.test(filters.get(idx));
+            nanos[idx].add(System.nanoTime() - start);
+            evaluations[idx].increment();
+            if (!passed) {
+                rejections[idx].increment();
+                retVal = false;
+                break;
+            }
+        }
+        if (0 == samples.incrementAndGet() % REORDER_SAMPLES) {
+            reorder();
+        }
+        return retVal;
+    }
+
+    private synchronized void reorder() {
+        double[] ranks = new double[filters.size()];
+        for (int idx = 0; idx < ranks.length; idx++) {
+            long evaluated = evaluations[idx].sum();
+            // a filter which has not been reached yet stays behind the others
+            ranks[idx] = 0 == evaluated
+                    ? Double.MAX_VALUE
+                    : ((double) nanos[idx].sum() / evaluated) / Math.max(MIN_REJECTION_RATE, (double) rejections[idx].sum() / evaluated);
+        }
+        this.order = IntStream.of(order).boxed()
+                .sorted(Comparator.comparingDouble(idx -> ranks[idx]))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    public List<F> getOrder() {
+        return IntStream.of(order).mapToObj(filters::get).toList();
+    }
+
+    // the current order with the measured rejection rate and mean time of each filter
+    public String describe() {
+        return IntStream.of(order).mapToObj(idx -> {
+            long evaluated = evaluations[idx].sum();
+            return filters.get(idx) + (0 == evaluated ? " [not sampled]" : String.format(Locale.ROOT, " [rejects %.1f %% of %d, %d ns]",
+                    100.0 * rejections[idx].sum() / evaluated, evaluated, nanos[idx].sum() / evaluated));
+        }).collect(Collectors.joining(", "));
+    }
+
+    @Override
+    public String toString() {
+        return getOrder().stream().map(Object::toString).collect(Collectors.joining(", "));
+    }
+
+    private static LongAdder[] adders(int size) {
+        LongAdder[] retVal = new LongAdder[size];
+        for (int idx = 0; idx < size; idx++) {
+            retVal[idx] = new LongAdder();
+        }
+        return retVal;
+    }
+}
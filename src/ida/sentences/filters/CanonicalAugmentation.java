@@ -0,0 +1,115 @@
+package ida.sentences.filters;
+
+import ida.ilp.logic.Clause;
+import ida.sentences.SentenceSetup;
+import ida.sentences.SentenceState;
+import ida.sentences.storage.CanonicalSet;
+import ida.utils.Sugar;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Canonical augmentation (McKay's orderly generation) for the BFS. Every clause d of a sentence S is a possible way back,
+// to the parent S - d; it is a valid one if the parent is in the finished layer (kept here as the set of canonical forms
+// of the layer) and d may join it. The canonical deletion is the valid clause with the smallest invariant, i.e. the
+// ultra-canonical form of the clause alone, and ties are broken by the canonical form of the parent. A child S = alpha +
+// beta is kept only if beta is the canonical deletion (or a clause leaving the same parent up to isomorphism), so every
+// sentence is generated from the only stored representative of its canonical parent; just the siblings, i.e. extensions
+// of that parent by clauses mapped onto each other by its automorphisms, remain to be deduplicated. The result equals
+// that of generating everything as long as the other joining filters do not change under isomorphism.
+public class CanonicalAugmentation extends JoiningFilter {
+
+    private final SentenceSetup setup;
+    private final List<JoiningFilter> filters; // the others, a valid way back has to pass them
+    private final Map<Integer, CanonicalSet> layers = new ConcurrentHashMap<>(); // by the number of literals
+    private final Map<Integer, String> invariants = new ConcurrentHashMap<>(); // by the id of the clause
+
+    public CanonicalAugmentation(SentenceSetup setup, List<JoiningFilter> filters) {
+        super("CanonicalAugmentation", null);
+        this.setup = setup;
+        this.filters = filters;
+    }
+
+    @Override
+    public boolean test(SentenceState alpha, Clause beta) {
+        if (alpha.clauses.isEmpty()) {
+            return true;
+        }
+        int literals = alpha.countLiterals() + beta.countLiterals();
+        String own = invariant(beta);
+        List<Clause> ties = Sugar.list();
+        for (Clause delta : alpha.clauses) {
+            int compare = invariant(delta).compareTo(own);
+            if (compare < 0 && null != validParent(alpha, beta, delta, literals)) {
+                return false;
+            } else if (0 == compare) {
+                ties.add(delta);
+            }
+        }
+        if (ties.isEmpty()) {
+            return true;
+        }
+        String parent = alpha.getUltraCannonic();
+        for (Clause delta : ties) {
+            String other = validParent(alpha, beta, delta, literals);
+            if (null != other && other.compareTo(parent) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the finished layer, as the set of canonical forms of its sentences
+    public void retain(int literals, CanonicalSet canonicals) {
+        CanonicalSet previous = layers.put(literals, canonicals);
+        if (null != previous && previous != canonicals) {
+            previous.clear();
+        }
+    }
+
+    // e.g. layers loaded from a checkpoint, whose canonical forms have not been collected
+    public void retainIfMissing(int literals, List<SentenceState> sentences) {
+        if (layers.containsKey(literals)) {
+            return;
+        }
+        CanonicalSet canonicals = CanonicalSet.create(setup);
+        sentences.parallelStream().forEach(sentence -> canonicals.add(sentence.getUltraCannonic()));
+        layers.put(literals, canonicals);
+    }
+
+    public void forget(int literals) {
+        CanonicalSet canonicals = layers.remove(literals);
+        if (null != canonicals) {
+            canonicals.clear();
+        }
+    }
+
+    // the canonical form of alpha + beta - delta if delta is a valid way back, null otherwise
+    private String validParent(SentenceState alpha, Clause beta, Clause delta, int literals) {
+        CanonicalSet layer = layers.get(literals - delta.countLiterals());
+        if (null == layer) {
+            return null;
+        }
+        List<Clause> clauses = Sugar.list();
+        for (Clause clause : alpha.clauses) {
+            if (clause != delta) {
+                clauses.add(clause);
+            }
+        }
+        clauses.add(beta);
+        SentenceState parent = new SentenceState(clauses, setup);
+        if (!filters.stream().allMatch(filter -> filter.test(parent, delta))) {
+            return null;
+        }
+        String canonical = parent.getUltraCannonic();
+        return layer.contains(canonical) ? canonical : null;
+    }
+
+    private String invariant(Clause clause) {
+        if (clause.getId() < 0) {
+            return new SentenceState(Sugar.list(clause), setup).getUltraCannonic();
+        }
+        return invariants.computeIfAbsent(clause.getId(), id -> new SentenceState(Sugar.list(clause), setup).getUltraCannonic());
+    }
+}
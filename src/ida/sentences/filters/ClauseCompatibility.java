@@ -0,0 +1,241 @@
+package ida.sentences.filters;
+
+import ida.ilp.logic.Clause;
+import ida.sentences.SentenceState;
+import ida.utils.Sugar;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+// Bitsets over the indexed clause basis for joining filters which decompose into tests of clauses, clause pairs, and the
+// sentence alone (see JoiningFilter.Decomposition). Bit p of the row of a clause gamma says whether the clause at position p
+// may join a sentence containing gamma; the clauses joinable with a sentence are then the AND of its rows (and of the
+// masks of single clauses and of the literal budget), which is iterated in the order of positions, i.e. in the order of
+// the basis. Rows are computed at the first use of a clause. The remaining filters stay to be evaluated on each
+// candidate separately.
+public class ClauseCompatibility {
+
+    private final Clause[] byPosition;
+    private final int[] positionById;
+    private final int words;
+    private final List<JoiningFilter> forAll;
+    private final List<JoiningFilter> forSome;
+    private final List<JoiningFilter> sentence;
+    private final List<JoiningFilter> budget;
+    private final List<JoiningFilter> residual;
+    private final long[] single; // positions passing all clause tests
+    private final long[][] literalsAtMost; // positions of clauses with at most the index literals
+    private final AtomicReferenceArray<long[]> forAllRows;
+    private final List<AtomicReferenceArray<long[]>> forSomeRows;
+    private final Map<List<Clause>, long[]> members = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private ClauseCompatibility(List<Clause> basis, Split filters) {
+        this.byPosition = basis.toArray(new Clause[0]);
+        this.positionById = new int[basis.stream().mapToInt(Clause::getId).max().orElse(-1) + 1];
+        Arrays.fill(positionById, -1);
+        for (int position = 0; position < byPosition.length; position++) {
+            positionById[byPosition[position].getId()] = position;
+        }
+        this.words = (byPosition.length + 63) >>> 6;
+        this.forAll = filters.forAll;
+        this.forSome = filters.forSome;
+        this.sentence = filters.sentence;
+        this.budget = filters.budget;
+        this.residual = filters.residual;
+        this.single = row(beta -> forAll.stream().allMatch(filter -> null == filter.getClauseTest() || filter.getClauseTest().test(beta)));
+        int longest = basis.stream().mapToInt(clause -> clause.literals().size()).max().orElse(0);
+        this.literalsAtMost = new long[longest + 1][];
+        for (int literals = 0; literals <= longest; literals++) {
+            int limit = literals;
+            literalsAtMost[literals] = row(beta -> beta.literals().size() <= limit);
+        }
+        this.forAllRows = new AtomicReferenceArray<>(byPosition.length);
+        this.forSomeRows = Sugar.list();
+        for (int idx = 0; idx < forSome.size(); idx++) {
+            forSomeRows.add(new AtomicReferenceArray<>(byPosition.length));
+        }
+    }
+
+    // filters which have to be evaluated on candidates given by compatible
+    public List<JoiningFilter> getResidualFilters() {
+        return residual;
+    }
+
+    // clauses of the list (in its order) which pass all decomposed filters with the sentence
+    public List<Clause> compatible(SentenceState alpha, List<Clause> clauses) {
+        if (!sentence.stream().allMatch(filter -> filter.getSentenceTest().test(alpha))) {
+            return Sugar.list();
+        }
+        int[] positions = positions(alpha.clauses);
+        if (null == positions) { // e.g. a seed given from outside of the basis
+            return clauses.stream().filter(clause -> passesDecomposed(alpha, clause)).toList();
+        }
+        long[] mask = members(clauses);
+        if (null == mask) { // the list is not a subsequence of the basis
+            long[] compatible = mask(alpha, positions, single.clone());
+            return clauses.stream().filter(clause -> {
+                int position = position(clause);
+                return position >= 0 ? isSet(compatible, position) : passesDecomposed(alpha, clause);
+            }).toList();
+        }
+        long[] compatible = mask(alpha, positions, mask.clone());
+        and(compatible, single);
+        List<Clause> retVal = new ArrayList<>();
+        for (int word = 0; word < words; word++) {
+            long bits = compatible[word];
+            while (0 != bits) {
+                retVal.add(byPosition[(word << 6) + Long.numberOfTrailingZeros(bits)]);
+                bits &= bits - 1;
+            }
+        }
+        return retVal;
+    }
+
+    private boolean passesDecomposed(SentenceState alpha, Clause clause) {
+        return forAll.stream().allMatch(filter -> filter.test(alpha, clause))
+                && forSome.stream().allMatch(filter -> filter.test(alpha, clause))
+                && budget.stream().allMatch(filter -> filter.test(alpha, clause));
+    }
+
+    private long[] mask(SentenceState alpha, int[] positions, long[] retVal) {
+        for (JoiningFilter filter : budget) {
+            int literals = filter.getLiteralBudget().applyAsInt(alpha);
+            if (literals < 0) {
+                Arrays.fill(retVal, 0L);
+                return retVal;
+            }
+            and(retVal, literalsAtMost[Math.min(literals, literalsAtMost.length - 1)]);
+        }
+        for (int position : positions) {
+            and(retVal, forAllRow(position));
+        }
+        if (positions.length > 0) {
+            for (int idx = 0; idx < forSome.size(); idx++) {
+                long[] union = new long[words];
+                for (int position : positions) {
+                    long[] row = forSomeRow(idx, position);
+                    for (int word = 0; word < words; word++) {
+                        union[word] |= row[word];
+                    }
+                }
+                and(retVal, union);
+            }
+        }
+        return retVal;
+    }
+
+    private long[] forAllRow(int position) {
+        long[] row = forAllRows.get(position);
+        if (null == row) {
+            Clause gamma = byPosition[position];
+            row = row(beta -> forAll.stream().allMatch(filter -> filter.getPairTest().test(gamma, beta)));
+            forAllRows.set(position, row);
+        }
+        return row;
+    }
+
+    private long[] forSomeRow(int idx, int position) {
+        long[] row = forSomeRows.get(idx).get(position);
+        if (null == row) {
+            Clause gamma = byPosition[position];
+            BiPredicate<Clause, Clause> pair = forSome.get(idx).getPairTest();
+            row = row(beta -> pair.test(gamma, beta));
+            forSomeRows.get(idx).set(position, row);
+        }
+        return row;
+    }
+
+    private long[] row(Predicate<Clause> test) {
+        long[] row = new long[words];
+        for (int position = 0; position < byPosition.length; position++) {
+            if (test.test(byPosition[position])) {
+                row[position >>> 6] |= 1L << position;
+            }
+        }
+        return row;
+    }
+
+    // bitset of the list, null if it is not ordered as the basis (then the order of set bits differs from the list)
+    private long[] members(List<Clause> clauses) {
+        long[] retVal = members.get(clauses);
+        if (null == retVal) {
+            retVal = new long[words];
+            int last = -1;
+            for (Clause clause : clauses) {
+                int position = position(clause);
+                if (position <= last) {
+                    return null;
+                }
+                retVal[position >>> 6] |= 1L << position;
+                last = position;
+            }
+            members.put(clauses, retVal);
+        }
+        return retVal;
+    }
+
+    private int[] positions(List<Clause> clauses) {
+        int[] retVal = new int[clauses.size()];
+        for (int idx = 0; idx < retVal.length; idx++) {
+            retVal[idx] = position(clauses.get(idx));
+            if (retVal[idx] < 0) {
+                return null;
+            }
+        }
+        return retVal;
+    }
+
+    private int position(Clause clause) {
+        int id = clause.getId();
+        if (id < 0 || id >= positionById.length) {
+            return -1;
+        }
+        int position = positionById[id];
+        return position >= 0 && byPosition[position] == clause ? position : -1;
+    }
+
+    private static boolean isSet(long[] bits, int position) {
+        return 0 != (bits[position >>> 6] & (1L << position));
+    }
+
+    private static void and(long[] target, long[] other) {
+        for (int word = 0; word < target.length; word++) {
+            target[word] &= other[word];
+        }
+    }
+
+    // bytes taken by all rows once every clause has been used
+    public static long estimateBytes(int basisSize, List<JoiningFilter> filters) {
+        Split split = new Split(filters);
+        long matrices = (split.forAll.isEmpty() ? 0 : 1) + split.forSome.size();
+        return matrices * basisSize * (long) ((basisSize + 63) >>> 6) * Long.BYTES;
+    }
+
+    // null if none of the filters is decomposed; basis clauses have to have distinct ids
+    public static ClauseCompatibility create(List<Clause> basis, List<JoiningFilter> filters) {
+        Split split = new Split(filters);
+        return split.residual.size() == filters.size() ? null : new ClauseCompatibility(basis, split);
+    }
+
+    private static class Split {
+        private final List<JoiningFilter> forAll = Sugar.list();
+        private final List<JoiningFilter> forSome = Sugar.list();
+        private final List<JoiningFilter> sentence = Sugar.list();
+        private final List<JoiningFilter> budget = Sugar.list();
+        private final List<JoiningFilter> residual = Sugar.list();
+
+        private Split(List<JoiningFilter> filters) {
+            for (JoiningFilter filter : filters) {
+                switch (filter.getDecomposition()) {
+                    case FOR_ALL_CLAUSES -> forAll.add(filter);
+                    case FOR_SOME_CLAUSE -> forSome.add(filter);
+                    case SENTENCE -> sentence.add(filter);
+                    case LITERAL_BUDGET -> budget.add(filter);
+                    default -> residual.add(filter);
+                }
+            }
+        }
+    }
+}
@@ -5,15 +5,79 @@ import ida.sentences.SentenceState;
 
 import java.util.function.BiPredicate;
 import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 public class JoiningFilter implements BiPredicate<SentenceState, Clause> {
 
     private final String name;
     private final BiPredicate<SentenceState, Clause> predicate;
+    // optional decomposition of the predicate into cheaper tests, see ClauseCompatibility
+    private final Decomposition decomposition;
+    private final Predicate<Clause> clauseTest;
+    private final BiPredicate<Clause, Clause> pairTest;
+    private final Predicate<SentenceState> sentenceTest;
+    private final ToIntFunction<SentenceState> literalBudget;
+
+    public enum Decomposition {
+        NONE,
+        FOR_ALL_CLAUSES, // clauseTest(beta) (null stands for true) and pairTest(gamma, beta) for every gamma in alpha
+        FOR_SOME_CLAUSE, // alpha is empty or pairTest(gamma, beta) for some gamma in alpha
+        SENTENCE, // sentenceTest(alpha), i.e. independent of beta
+        LITERAL_BUDGET // beta has at most literalBudget(alpha) literals
+    }
 
     public JoiningFilter(String name, BiPredicate<SentenceState, Clause> predicate) {
+        this(name, predicate, Decomposition.NONE, null, null, null, null);
+    }
+
+    private JoiningFilter(String name, BiPredicate<SentenceState, Clause> predicate, Decomposition decomposition,
+                          Predicate<Clause> clauseTest, BiPredicate<Clause, Clause> pairTest,
+                          Predicate<SentenceState> sentenceTest, ToIntFunction<SentenceState> literalBudget) {
         this.name = name;
         this.predicate = predicate;
+        this.decomposition = decomposition;
+        this.clauseTest = clauseTest;
+        this.pairTest = pairTest;
+        this.sentenceTest = sentenceTest;
+        this.literalBudget = literalBudget;
+    }
+
+    // the following declare an equivalent form of the predicate; it is up to the caller that it really is equivalent
+
+    public JoiningFilter forAllClauses(Predicate<Clause> clause, BiPredicate<Clause, Clause> pair) {
+        return new JoiningFilter(name, predicate, Decomposition.FOR_ALL_CLAUSES, clause, pair, null, null);
+    }
+
+    public JoiningFilter forSomeClause(BiPredicate<Clause, Clause> pair) {
+        return new JoiningFilter(name, predicate, Decomposition.FOR_SOME_CLAUSE, null, pair, null, null);
+    }
+
+    public JoiningFilter forSentence(Predicate<SentenceState> sentence) {
+        return new JoiningFilter(name, predicate, Decomposition.SENTENCE, null, null, sentence, null);
+    }
+
+    public JoiningFilter withinLiterals(ToIntFunction<SentenceState> budget) {
+        return new JoiningFilter(name, predicate, Decomposition.LITERAL_BUDGET, null, null, null, budget);
+    }
+
+    public Decomposition getDecomposition() {
+        return decomposition;
+    }
+
+    public Predicate<Clause> getClauseTest() {
+        return clauseTest;
+    }
+
+    public BiPredicate<Clause, Clause> getPairTest() {
+        return pairTest;
+    }
+
+    public Predicate<SentenceState> getSentenceTest() {
+        return sentenceTest;
+    }
+
+    public ToIntFunction<SentenceState> getLiteralBudget() {
+        return literalBudget;
     }
 
     // returns true iff the clause should stay in the collection, false otherwise (i.e. it is violated, e.g. a clause is a tautology...)
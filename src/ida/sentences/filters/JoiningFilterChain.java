@@ -0,0 +1,31 @@
+package ida.sentences.filters;
+
+import ida.ilp.logic.Clause;
+import ida.sentences.SentenceState;
+
+import java.util.List;
+
+// conjunction of joining filters evaluated in the adaptive order
+public class JoiningFilterChain extends JoiningFilter {
+
+    private final AdaptiveOrder<JoiningFilter> order;
+
+    public JoiningFilterChain(List<JoiningFilter> filters) {
+        super("JoiningFilterChain", null);
+        this.order = new AdaptiveOrder<>(filters);
+    }
+
+    @Override
+    public boolean test(SentenceState alpha, Clause beta) {
+        return order.test(filter -> filter.test(alpha, beta));
+    }
+
+    public AdaptiveOrder<JoiningFilter> getOrder() {
+        return order;
+    }
+
+    @Override
+    public String getName() {
+        return order.toString();
+    }
+}
@@ -0,0 +1,28 @@
+package ida.sentences.filters;
+
+import java.util.List;
+
+// conjunction of single filters evaluated in the adaptive order
+public class SingleFilterChain<T> extends SingleFilter<T> {
+
+    private final AdaptiveOrder<SingleFilter<T>> order;
+
+    public SingleFilterChain(List<SingleFilter<T>> filters) {
+        super("SingleFilterChain", null);
+        this.order = new AdaptiveOrder<>(filters);
+    }
+
+    @Override
+    public boolean test(T t) {
+        return order.test(filter -> filter.test(t));
+    }
+
+    public AdaptiveOrder<SingleFilter<T>> getOrder() {
+        return order;
+    }
+
+    @Override
+    public String getName() {
+        return order.toString();
+    }
+}
@@ -4,11 +4,13 @@ import ida.ilp.logic.*;
 import ida.ilp.logic.quantifiers.Quantifier;
 import ida.ilp.logic.quantifiers.TwoQuantifiers;
 import ida.ilp.logic.subsumption.Matching;
+import ida.sentences.Deadline;
 import ida.sentences.SentenceSetup;
 import ida.sentences.SentenceState;
 import ida.sentences.caches.ClausesCache;
 import ida.sentences.filters.SingleFilter;
 import ida.sentences.filters.JoiningFilter;
+import ida.sentences.metrics.CallStats;
 import ida.utils.Combinatorics;
 import ida.utils.Sugar;
 import ida.utils.collections.MultiList;
@@ -189,7 +191,7 @@ public class ClausesGenerator {
                     if (sos.isEmpty()) {
                         return true;
                     }
-                    boolean val = !isProveable(sos.toString(), pathToProver9, maxSeconds);
+                    boolean val = !isProveable(sos.toString(), pathToProver9, maxSeconds, true);
 
                     if (useLogger && !val) {
                         log(sentence, null, "ContradictionFilter");
@@ -226,7 +228,7 @@ public class ClausesGenerator {
                         sos.append(clause.getProver9Format());
                         sos.deleteCharAt(sos.length() - 1);
                         sos.append(").");
-                        val = !isProveable(sos.toString(), pathToProver9, maxSeconds);
+                        val = !isProveable(sos.toString(), pathToProver9, maxSeconds, false); // the basis goes into checkpoints
                     }
                     if (useLogger && !val) {
                         log(null, clause, "TautologyFilter");
@@ -235,7 +237,9 @@ public class ClausesGenerator {
                 });
     }
 
-    private boolean isProveable(String setOfSentences, Path pathToProver9, String maxSecond) {
+    // a cancellable call is cut short once the deadline expires, i.e. its answer is not to be trusted anymore
+    private boolean isProveable(String setOfSentences, Path pathToProver9, String maxSecond, boolean cancellable) {
+        long start = System.nanoTime();
         try {
             File file = File.createTempFile("problem", ".in");
             String sb = "set(quiet).\n" +
@@ -249,6 +253,9 @@ public class ClausesGenerator {
             ProcessBuilder processBuilder = new ProcessBuilder();
             processBuilder.command(pathToProver9.toString(), "-f", file.getAbsolutePath());
             Process process = processBuilder.start();
+            if (cancellable) {
+                Deadline.watch(process);
+            }
 
             BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
             boolean proved = false;
@@ -258,7 +265,9 @@ public class ClausesGenerator {
             }
 
             int exitCode = process.waitFor();
+            Deadline.unwatch(process);
             Files.deleteIfExists(file.toPath());
+            CallStats.PROVER9.add(System.nanoTime() - start, 1);
             return proved;
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -407,7 +416,7 @@ public class ClausesGenerator {
                 log(alpha, beta, "ConnectedComponents");
             }
             return val;
-        });
+        }).forSomeClause((gamma, beta) -> !Sugar.intersection(gamma.getPredicates(), beta.getPredicates()).isEmpty());
     }
     public JoiningFilter maxOverallLiterals(int l) { // TODO write tests!
         return new JoiningFilter("MaxOverallLiterals:" + l, (alpha,beta) -> {
@@ -416,7 +425,7 @@ public class ClausesGenerator {
                 log(alpha, beta, "MaxOverallLiterals");
             }
             return val;
-        });
+        }).withinLiterals(alpha -> l - alpha.countLiterals());
     }
 
 
@@ -426,11 +435,7 @@ public class ClausesGenerator {
         return new JoiningFilter("DisjunctiveClauses", (alpha, beta) -> {
             boolean val = true;
             for (Clause clause : alpha.clauses) {
-                if ((clause.getId() == beta.getId() && clause.getId() >= 0) ||
-                        clause.equals(beta) ||
-                        (clause.getQuantifier().equals(beta.getQuantifier())
-                                && clause.getQuantifier().isSwappable()
-                                && clause.equals(beta.swap()))) {
+                if (isSameClause(clause, beta)) {
                     val = false;
                     break;
                 }
@@ -439,7 +444,15 @@ public class ClausesGenerator {
                 log(alpha, beta, "DisjunctiveClauses");
             }
             return val;
-        });
+        }).forAllClauses(null, (gamma, beta) -> !isSameClause(gamma, beta));
+    }
+
+    private boolean isSameClause(Clause clause, Clause beta) {
+        return (clause.getId() == beta.getId() && clause.getId() >= 0) ||
+                clause.equals(beta) ||
+                (clause.getQuantifier().equals(beta.getQuantifier())
+                        && clause.getQuantifier().isSwappable()
+                        && clause.equals(beta.swap()));
     }
 
     // this is not optimized
@@ -750,7 +763,7 @@ public class ClausesGenerator {
                 log(alpha, beta, "TrivialConstraints");
             }
             return val;
-        });
+        }).forAllClauses(beta -> !beta.isCliffhanger(), (gamma, beta) -> !gamma.isCliffhanger());
     }
 
     public JoiningFilter maxClauses(int maxClauses) {
@@ -760,7 +773,31 @@ public class ClausesGenerator {
                 log(alpha, beta, "MaxClauses");
             }
             return val;
-        });
+        }).forSentence(alpha -> alpha.clauses.size() + 1 <= maxClauses);
+    }
+
+    // Clauses are joined by non-decreasing rank, i.e. by the number of literals and then by the ultra-canonical form of the
+    // clause alone. The rank does not change under isomorphism, so a stored representative of any prefix may be extended
+    // as well; clauses of the same rank are joined in any order.
+    public JoiningFilter orderedExtension(SentenceSetup setup) {
+        Map<Integer, String> ranks = new ConcurrentHashMap<>();
+        Comparator<Clause> order = Comparator.comparingInt(Clause::countLiterals)
+                .thenComparing(clause -> clause.getId() < 0
+                        ? new SentenceState(Sugar.list(clause), setup).getUltraCannonic()
+                        : ranks.computeIfAbsent(clause.getId(), id -> new SentenceState(Sugar.list(clause), setup).getUltraCannonic()));
+        return new JoiningFilter("OrderedExtension", (alpha, beta) -> {
+            boolean val = true;
+            for (Clause clause : alpha.clauses) {
+                if (order.compare(clause, beta) > 0) {
+                    val = false;
+                    break;
+                }
+            }
+            if (useLogger && !val) {
+                log(alpha, beta, "OrderedExtension");
+            }
+            return val;
+        }).forAllClauses(null, (gamma, beta) -> order.compare(gamma, beta) <= 0);
     }
 
     public JoiningFilter creationLogging(String name) {
@@ -936,7 +973,7 @@ public class ClausesGenerator {
                 log(alpha, beta, "QuantifiersReducibilityTwoFormulae");
             }
             return val;
-        });
+        }).forAllClauses(null, (gamma, beta) -> !isForbidden(gamma.getId(), beta.getId()));
     }
 
 
@@ -0,0 +1,33 @@
+package ida.sentences.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// counts and overall latency of calls to external tools; the tools are called from parallel streams, hence the adders
+public class CallStats {
+
+    public static final CallStats JULIA = new CallStats();
+    public static final CallStats PROVER9 = new CallStats();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder items = new LongAdder();
+
+    // items is the number of queries answered by the call, e.g. sentences whose cell graphs were computed
+    public void add(long nanos, long items) {
+        this.calls.increment();
+        this.nanos.add(nanos);
+        this.items.add(items);
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getNanos() {
+        return nanos.sum();
+    }
+
+    public long getItems() {
+        return items.sum();
+    }
+}
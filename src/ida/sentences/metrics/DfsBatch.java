@@ -0,0 +1,49 @@
+package ida.sentences.metrics;
+
+// sums over DFS nodes opened since the last metrics record; nodes may be opened by parallel workers
+public class DfsBatch {
+
+    private long nodes;
+    private long raw;
+    private long afterPruning;
+    private long hidden;
+    private long printed;
+    private long generation; // all times are in nanoseconds
+    private long pruning;
+    private long filtering;
+    private long printing;
+    private long openedNodes;
+
+    public synchronized void add(long raw, long afterPruning, long hidden, long printed, long generation, long pruning, long filtering, long printing) {
+        this.raw += raw;
+        this.afterPruning += afterPruning;
+        this.hidden += hidden;
+        this.printed += printed;
+        this.generation += generation;
+        this.pruning += pruning;
+        this.filtering += filtering;
+        this.printing += printing;
+        this.nodes++;
+    }
+
+    // writes the batch once it has at least batchSize nodes, or whatever there is if forced (e.g. at the end of the search)
+    public synchronized void report(MetricsLog metrics, int batchSize, boolean force) {
+        if (!metrics.isEnabled() || 0 == nodes || nodes < batchSize && !force) {
+            return;
+        }
+        openedNodes += nodes;
+        metrics.record("dfs")
+                .put("nodes", nodes)
+                .put("openedNodes", openedNodes)
+                .put("raw", raw)
+                .put("afterPruning", afterPruning)
+                .put("hidden", hidden)
+                .put("printed", printed)
+                .putMillis("generation", generation)
+                .putMillis("pruning", pruning)
+                .putMillis("filtering", filtering)
+                .putMillis("printing", printing)
+                .write();
+        nodes = raw = afterPruning = hidden = printed = generation = pruning = filtering = printing = 0;
+    }
+}
@@ -0,0 +1,114 @@
+package ida.sentences.metrics;
+
+import ida.sentences.SentenceSetup;
+import ida.sentences.caches.ClausesCache;
+import ida.sentences.caches.LiteralsCache;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Machine-readable counterpart of the comment lines: one JSON object per line, e.g. one per BFS layer or per batch of
+// opened DFS nodes. Every record carries the elapsed time, heap, cache sizes, and the calls of Julia and Prover9 made
+// since the previous record. A log without a file ignores everything.
+public class MetricsLog {
+
+    private final PrintWriter writer;
+    private final long start = System.nanoTime();
+    private long juliaCalls;
+    private long juliaNanos;
+    private long juliaItems;
+    private long prover9Calls;
+    private long prover9Nanos;
+
+    private MetricsLog(PrintWriter writer) {
+        this.writer = writer;
+    }
+
+    public boolean isEnabled() {
+        return null != writer;
+    }
+
+    public Record record(String type) {
+        return new Record(type);
+    }
+
+    private synchronized void write(StringBuilder record) {
+        record.append(", \"elapsedMs\": ").append(toMillis(System.nanoTime() - start));
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        record.append(", \"heapUsed\": ").append(heap.getUsed())
+                .append(", \"heapCommitted\": ").append(heap.getCommitted())
+                .append(", \"heapMax\": ").append(heap.getMax());
+        record.append(", \"literalsCache\": ").append(LiteralsCache.getInstance().size())
+                .append(", \"clausesCache\": ").append(ClausesCache.getInstance().size());
+
+        long calls = CallStats.JULIA.getCalls();
+        long nanos = CallStats.JULIA.getNanos();
+        long items = CallStats.JULIA.getItems();
+        record.append(", \"juliaCalls\": ").append(calls - juliaCalls)
+                .append(", \"juliaSentences\": ").append(items - juliaItems)
+                .append(", \"juliaMs\": ").append(toMillis(nanos - juliaNanos));
+        juliaCalls = calls;
+        juliaNanos = nanos;
+        juliaItems = items;
+        calls = CallStats.PROVER9.getCalls();
+        nanos = CallStats.PROVER9.getNanos();
+        record.append(", \"prover9Calls\": ").append(calls - prover9Calls)
+                .append(", \"prover9Ms\": ").append(toMillis(nanos - prover9Nanos));
+        prover9Calls = calls;
+        prover9Nanos = nanos;
+
+        writer.println(record.append("}"));
+        writer.flush();
+    }
+
+    public static long toMillis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    // appends to the file so that a resumed search continues the same log
+    public static MetricsLog create(SentenceSetup setup) {
+        if (null == setup.metricsFile) {
+            return new MetricsLog(null);
+        }
+        try {
+            return new MetricsLog(new PrintWriter(Files.newBufferedWriter(Paths.get(setup.metricsFile),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public class Record {
+        private final StringBuilder json;
+
+        private Record(String type) {
+            this.json = new StringBuilder("{\"type\": \"").append(type).append("\"");
+        }
+
+        public Record put(String key, long value) {
+            json.append(", \"").append(key).append("\": ").append(value);
+            return this;
+        }
+
+        public Record put(String key, String value) {
+            json.append(", \"").append(key).append("\": \"").append(value).append("\"");
+            return this;
+        }
+
+        // for durations measured in nanoseconds
+        public Record putMillis(String key, long nanos) {
+            return put(key + "Ms", toMillis(nanos));
+        }
+
+        public void write() {
+            if (isEnabled()) {
+                MetricsLog.this.write(json);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ida.sentences.storage;
+
+import ida.sentences.SentenceSetup;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+// a thread-safe set of canonical forms of already seen sentences, e.g. the closed list of DFS
+public interface CanonicalSet {
+
+    byte STRINGS = 1;
+    byte FINGERPRINTS = 2;
+
+    // true iff the canonical form has not been in the set
+    boolean add(String canonical);
+
+    boolean remove(String canonical);
+
+    boolean contains(String canonical);
+
+    long size();
+
+    // throws away the content, including the files behind it
+    void clear();
+
+    // the kind (see STRINGS, FINGERPRINTS) followed by the content
+    void write(DataOutputStream out) throws IOException;
+
+    // fingerprints unless in debug mode, where exact strings are kept
+    static CanonicalSet create(SentenceSetup setup) {
+        if (!setup.fingerprints) {
+            return new StringSet();
+        }
+        return null == setup.fingerprintStore ? new FingerprintSet() : new FingerprintSet(Paths.get(setup.fingerprintStore));
+    }
+
+    // a set of the stored kind, whatever the setup says
+    static CanonicalSet read(DataInputStream in, SentenceSetup setup) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case STRINGS -> {
+                StringSet retVal = new StringSet();
+                retVal.readContent(in);
+                return retVal;
+            }
+            case FINGERPRINTS -> {
+                FingerprintSet retVal = null == setup.fingerprintStore ? new FingerprintSet() : new FingerprintSet(Paths.get(setup.fingerprintStore));
+                retVal.readContent(in);
+                return retVal;
+            }
+            default -> throw new IllegalStateException("Unknown kind of canonical set: " + kind);
+        }
+    }
+}
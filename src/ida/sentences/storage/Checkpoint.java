@@ -0,0 +1,251 @@
+package ida.sentences.storage;
+
+import ida.cellGraphs.CellGraphFilter;
+import ida.ilp.logic.Clause;
+import ida.sentences.SentenceSetup;
+import ida.sentences.SentenceState;
+import ida.utils.Sugar;
+import ida.utils.collections.MultiList;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+// A binary, versioned snapshot of a BFS search taken at the end of a layer: the setup, the clause basis (with ids), the
+// seed, retained layers as arrays of clause ids, and the state of the cell-graph filter. Contrary to the text log
+// (statesStoring), restarting from it neither re-parses sentences nor recomputes isomorphisms of cell graphs.
+// A DFS snapshot stores the frontier (not yet opened nodes as clause ids) and the closed list instead of layers.
+public class Checkpoint {
+
+    private static final int MAGIC = 0x53464350; // SFCP
+    private static final int VERSION = 2;
+    public static final byte BFS = 1;
+    public static final byte DFS = 2;
+
+    public final byte kind;
+    public final List<Clause> basis;
+    public final SentenceState seed;
+    public final MultiList<Integer, SentenceState> sentences;
+    public final int nextLevel;
+    public final List<SentenceState> frontier; // DFS only; the bottom of the stack goes first
+    public final CanonicalSet closed; // DFS only
+    public final long printed; // DFS only
+
+    private Checkpoint(byte kind, List<Clause> basis, SentenceState seed, MultiList<Integer, SentenceState> sentences, int nextLevel,
+                       List<SentenceState> frontier, CanonicalSet closed, long printed) {
+        this.kind = kind;
+        this.basis = basis;
+        this.seed = seed;
+        this.sentences = sentences;
+        this.nextLevel = nextLevel;
+        this.frontier = frontier;
+        this.closed = closed;
+        this.printed = printed;
+    }
+
+    public static void storeBfs(Path path, SentenceSetup setup, List<Clause> basis, SentenceState seed,
+                                MultiList<Integer, SentenceState> sentences, CellGraphFilter cellGraphFilter, int nextLevel) {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 20))) {
+            writeHeader(out, BFS, setup);
+            writeClauses(out, basis);
+            writeClauses(out, null == seed ? Sugar.list() : seed.clauses);
+            out.writeInt(nextLevel);
+            List<Integer> levels = sentences.keySet().stream().filter(level -> !sentences.get(level).isEmpty()).sorted().toList();
+            out.writeInt(levels.size());
+            for (Integer level : levels) {
+                List<SentenceState> layer = sentences.get(level);
+                out.writeInt(level);
+                out.writeInt(layer.size());
+                for (int idx = 0; idx < layer.size(); idx++) {
+                    writeIds(out, layer instanceof IdLayer stored ? stored.getIds(idx) : toIds(layer.get(idx)));
+                }
+            }
+            cellGraphFilter.writeState(out);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        move(tmp, path);
+    }
+
+    // the closed list goes last and deflated, since it is by far the largest part of the snapshot
+    public static void storeDfs(Path path, SentenceSetup setup, List<Clause> basis, SentenceState seed, Collection<SentenceState> frontier,
+                                CanonicalSet closed, long printed, CellGraphFilter cellGraphFilter) {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 20))) {
+            writeHeader(out, DFS, setup);
+            writeClauses(out, basis);
+            writeClauses(out, null == seed ? Sugar.list() : seed.clauses);
+            out.writeLong(printed);
+            out.writeInt(frontier.size());
+            for (SentenceState node : frontier) {
+                writeIds(out, toIds(node));
+            }
+            cellGraphFilter.writeState(out);
+            DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED), 1 << 16);
+            DataOutputStream closedOut = new DataOutputStream(deflater);
+            closed.write(closedOut);
+            closedOut.flush();
+            deflater.finish();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        move(tmp, path);
+    }
+
+    // restores everything but the setup (see readSetupLine); retained layers go directly into memory-mapped files if
+    // the setup says so
+    public static Checkpoint load(Path path, SentenceSetup setup, CellGraphFilter cellGraphFilter) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 20))) {
+            byte kind = readHeader(in);
+            readString(in); // setup line
+            List<Clause> basis = readClauses(in);
+            List<Clause> seedClauses = readClauses(in);
+            SentenceState seed = seedClauses.isEmpty() ? null : new SentenceState(seedClauses, setup);
+            Set<Clause> indexed = Sugar.setFromCollections(basis, seedClauses);
+            Clause[] byId = new Clause[indexed.size()];
+            for (Clause clause : indexed) {
+                byId[clause.getId()] = clause;
+            }
+            if (DFS == kind) {
+                return loadDfs(in, setup, cellGraphFilter, basis, seed, byId);
+            }
+            int nextLevel = in.readInt();
+            LayerStore layerStore = LayerStore.create(setup.layerStore, indexed, setup);
+            MultiList<Integer, SentenceState> sentences = new MultiList<>();
+            int levels = in.readInt();
+            for (int levelIdx = 0; levelIdx < levels; levelIdx++) {
+                int level = in.readInt();
+                int size = in.readInt();
+                if (null == layerStore) {
+                    List<SentenceState> layer = new ArrayList<>(size);
+                    for (int idx = 0; idx < size; idx++) {
+                        layer.add(toSentence(readIds(in), byId, setup));
+                    }
+                    sentences.set(level, layer);
+                } else {
+                    IdLayer.Writer writer = layerStore.writer(level, level + seedClauses.size());
+                    for (int idx = 0; idx < size; idx++) {
+                        writer.append(readIds(in));
+                    }
+                    sentences.set(level, writer.finish());
+                }
+            }
+            cellGraphFilter.readState(in);
+            return new Checkpoint(kind, basis, seed, sentences, nextLevel, null, null, 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Checkpoint loadDfs(DataInputStream in, SentenceSetup setup, CellGraphFilter cellGraphFilter, List<Clause> basis,
+                                      SentenceState seed, Clause[] byId) throws IOException {
+        long printed = in.readLong();
+        int size = in.readInt();
+        List<SentenceState> frontier = new ArrayList<>(size);
+        for (int idx = 0; idx < size; idx++) {
+            frontier.add(toSentence(readIds(in), byId, setup));
+        }
+        cellGraphFilter.readState(in);
+        DataInputStream closedIn = new DataInputStream(new InflaterInputStream(in, new Inflater(), 1 << 16));
+        CanonicalSet closed = CanonicalSet.read(closedIn, setup);
+        return new Checkpoint(DFS, basis, seed, new MultiList<>(), 0, frontier, closed, printed);
+    }
+
+    public static String readSetupLine(Path path) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            readHeader(in);
+            return readString(in);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, byte kind, SentenceSetup setup) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeByte(kind);
+        writeString(out, setup.toString());
+    }
+
+    private static byte readHeader(DataInputStream in) throws IOException {
+        if (MAGIC != in.readInt()) {
+            throw new IllegalStateException("This is not a checkpoint file.");
+        }
+        int version = in.readInt();
+        if (VERSION != version) {
+            throw new IllegalStateException("Unsupported version of checkpoint: " + version);
+        }
+        return in.readByte();
+    }
+
+    private static void writeClauses(DataOutputStream out, List<Clause> clauses) throws IOException {
+        out.writeInt(clauses.size());
+        for (Clause clause : clauses) {
+            writeString(out, clause.getCannonic(true));
+        }
+    }
+
+    private static List<Clause> readClauses(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<Clause> clauses = new ArrayList<>(size);
+        for (int idx = 0; idx < size; idx++) {
+            clauses.add(Clause.parseWithQuantifier(readString(in)));
+        }
+        return clauses;
+    }
+
+    private static SentenceState toSentence(int[] ids, Clause[] byId, SentenceSetup setup) {
+        List<Clause> clauses = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            clauses.add(byId[id]);
+        }
+        return new SentenceState(clauses, setup);
+    }
+
+    private static int[] toIds(SentenceState sentence) {
+        return sentence.clauses.stream().mapToInt(Clause::getId).toArray();
+    }
+
+    private static void writeIds(DataOutputStream out, int[] ids) throws IOException {
+        out.writeInt(ids.length);
+        for (int id : ids) {
+            out.writeInt(id);
+        }
+    }
+
+    private static int[] readIds(DataInputStream in) throws IOException {
+        int[] ids = new int[in.readInt()];
+        for (int idx = 0; idx < ids.length; idx++) {
+            ids[idx] = in.readInt();
+        }
+        return ids;
+    }
+
+    public static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void move(Path from, Path to) {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package ida.sentences.storage;
+
+import ida.ilp.logic.Clause;
+import ida.ilp.logic.Literal;
+import ida.sentences.SentenceSetup;
+import ida.sentences.SentenceState;
+import ida.utils.tuples.Pair;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// A finished BFS layer kept on heap as one array of clause ids (in the order of clauses of each sentence) together with a
+// bitmask of the predicates of each sentence. A retained sentence thus takes a few ints and a long instead of a
+// SentenceState with its list of clauses, set of predicates, and cached strings. A sentence is materialized only when
+// accessed; its set of predicates is then shared with all sentences having the same mask. The list is read-only, except
+// for clear().
+public class CompactLayer extends AbstractList<SentenceState> implements RandomAccess, IdLayer {
+
+    private final Clause[] basis;
+    private final PredicateTable predicates;
+    private final SentenceSetup setup;
+    private int[] ids;
+    private int[] offsets; // ids of the index-th sentence are ids[offsets[index]] .. ids[offsets[index + 1] - 1]
+    private long[] masks; // null if there are more predicates than bits
+    private int size;
+
+    private CompactLayer(Clause[] basis, PredicateTable predicates, SentenceSetup setup, int[] ids, int[] offsets, long[] masks, int size) {
+        this.basis = basis;
+        this.predicates = predicates;
+        this.setup = setup;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.masks = masks;
+        this.size = size;
+    }
+
+    @Override
+    public SentenceState get(int index) {
+        Objects.checkIndex(index, size);
+        List<Clause> clauses = new ArrayList<>(offsets[index + 1] - offsets[index]);
+        for (int idx = offsets[index]; idx < offsets[index + 1]; idx++) {
+            clauses.add(basis[ids[idx]]);
+        }
+        return null == masks ? new SentenceState(clauses, setup) : new SentenceState(clauses, setup, predicates.toSet(masks[index]));
+    }
+
+    @Override
+    public int[] getIds(int index) {
+        Objects.checkIndex(index, size);
+        return Arrays.copyOfRange(ids, offsets[index], offsets[index + 1]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        this.ids = new int[0];
+        this.offsets = new int[1];
+        this.masks = null;
+        this.size = 0;
+    }
+
+    // bytes taken by the arrays of the layer
+    public long sizeInBytes() {
+        return 4L * ids.length + 4L * offsets.length + (null == masks ? 0 : 8L * masks.length);
+    }
+
+    public static class Writer implements IdLayer.Writer {
+        private final Clause[] basis;
+        private final PredicateTable predicates;
+        private final SentenceSetup setup;
+        private int[] ids = new int[1024];
+        private int[] offsets = new int[256];
+        private long[] masks;
+        private int size;
+
+        Writer(Clause[] basis, PredicateTable predicates, SentenceSetup setup) {
+            this.basis = basis;
+            this.predicates = predicates;
+            this.setup = setup;
+            this.masks = predicates.isMaskable() ? new long[offsets.length] : null;
+        }
+
+        @Override
+        public synchronized void append(Collection<SentenceState> sentences) {
+            for (SentenceState sentence : sentences) {
+                int[] clauseIds = new int[sentence.clauses.size()];
+                for (int idx = 0; idx < clauseIds.length; idx++) {
+                    clauseIds[idx] = sentence.clauses.get(idx).getId();
+                    if (clauseIds[idx] < 0 || clauseIds[idx] >= basis.length || basis[clauseIds[idx]] != sentence.clauses.get(idx)) {
+                        throw new IllegalStateException("Only clauses from the indexed basis can be stored:\t" + sentence.clauses.get(idx));
+                    }
+                }
+                append(clauseIds);
+            }
+        }
+
+        @Override
+        public synchronized void append(int[] clauseIds) {
+            int end = offsets[size];
+            if (end + clauseIds.length > ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(end + clauseIds.length, 2 * ids.length));
+            }
+            if (size + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+                if (null != masks) {
+                    masks = Arrays.copyOf(masks, offsets.length);
+                }
+            }
+            System.arraycopy(clauseIds, 0, ids, end, clauseIds.length);
+            if (null != masks) {
+                masks[size] = predicates.mask(clauseIds);
+            }
+            size++;
+            offsets[size] = end + clauseIds.length;
+        }
+
+        @Override
+        public synchronized CompactLayer finish() {
+            return new CompactLayer(basis, predicates, setup, Arrays.copyOf(ids, offsets[size]), Arrays.copyOf(offsets, size + 1),
+                    null == masks ? null : Arrays.copyOf(masks, size), size);
+        }
+    }
+
+    // Side table of the predicates of the basis: a bit for each predicate, a mask for each clause, and a shared set of
+    // predicates for each mask seen.
+    static class PredicateTable {
+        private final List<Pair<String, Integer>> byBit;
+        private final long[] clauseMasks;
+        private final Map<Long, Set<Pair<String, Integer>>> sets = new ConcurrentHashMap<>();
+
+        PredicateTable(Clause[] basis) {
+            Map<Pair<String, Integer>, Integer> bits = new LinkedHashMap<>();
+            for (Clause clause : basis) {
+                for (Literal literal : clause.literals()) {
+                    bits.putIfAbsent(literal.getPredicate(), bits.size());
+                }
+            }
+            this.byBit = new ArrayList<>(bits.keySet());
+            this.clauseMasks = new long[basis.length];
+            if (isMaskable()) {
+                for (int id = 0; id < basis.length; id++) {
+                    for (Literal literal : basis[id].literals()) {
+                        clauseMasks[id] |= 1L << bits.get(literal.getPredicate());
+                    }
+                }
+            }
+        }
+
+        boolean isMaskable() {
+            return byBit.size() <= Long.SIZE;
+        }
+
+        long mask(int[] ids) {
+            long retVal = 0L;
+            for (int id : ids) {
+                retVal |= clauseMasks[id];
+            }
+            return retVal;
+        }
+
+        Set<Pair<String, Integer>> toSet(long mask) {
+            return sets.computeIfAbsent(mask, key -> {
+                Set<Pair<String, Integer>> retVal = new HashSet<>();
+                for (long bits = key; 0 != bits; bits &= bits - 1) {
+                    retVal.add(byBit.get(Long.numberOfTrailingZeros(bits)));
+                }
+                return Collections.unmodifiableSet(retVal);
+            });
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ida.sentences.storage;
+
+import ida.utils.Sugar;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+// Lines sorted by their keys without keeping all of them in memory. Lines are collected into runs of at most runSize,
+// each full run is sorted and spilled into a temporary file, and the runs are k-way merged once the lines are wanted.
+// Lines with the same key keep the order in which they were added, so the result equals that of a stable sort in
+// memory. Unless more than runSize lines are added, nothing is written at all.
+public class ExternalSort implements Closeable {
+
+    private static final int BUFFER = 1 << 16;
+
+    private final Path directory; // null means the default temporary directory
+    private final int runSize;
+    private final List<Path> runs = Sugar.list();
+    private List<String[]> current = Sugar.list(); // pairs of key and line
+
+    public ExternalSort(Path directory, int runSize) {
+        if (runSize <= 0) {
+            throw new IllegalStateException("The size of a run has to be positive, not " + runSize + ".");
+        }
+        this.directory = directory;
+        this.runSize = runSize;
+    }
+
+    // the line is its own key
+    public void addAll(List<String> lines) {
+        for (String line : lines) {
+            add(line, line);
+        }
+    }
+
+    public void add(String key, String line) {
+        current.add(new String[]{key, line});
+        if (current.size() >= runSize) {
+            spill();
+        }
+    }
+
+    public boolean isEmpty() {
+        return runs.isEmpty() && current.isEmpty();
+    }
+
+    // passes all lines, sorted by their keys, to the consumer; the sort is empty afterwards
+    public void forEachSorted(Consumer<String> consumer) {
+        current.sort(Comparator.comparing(pair -> pair[0]));
+        if (runs.isEmpty()) {
+            current.forEach(pair -> consumer.accept(pair[1]));
+            current = Sugar.list();
+            return;
+        }
+        if (!current.isEmpty()) {
+            spill();
+        }
+        List<Run> readers = Sugar.list();
+        try {
+            PriorityQueue<Run> heads = new PriorityQueue<>(Comparator.comparing((Run run) -> run.key).thenComparingInt(run -> run.index));
+            for (Path path : runs) {
+                Run run = new Run(readers.size(), path);
+                readers.add(run);
+                if (run.next()) {
+                    heads.add(run);
+                }
+            }
+            while (!heads.isEmpty()) {
+                Run run = heads.poll();
+                consumer.accept(run.line);
+                if (run.next()) {
+                    heads.add(run);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            readers.forEach(Run::closeQuietly);
+            close();
+        }
+    }
+
+    // throws away all lines, including the spilled ones
+    @Override
+    public void close() {
+        current = Sugar.list();
+        for (Path path : runs) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        runs.clear();
+    }
+
+    private void spill() {
+        current.sort(Comparator.comparing(pair -> pair[0]));
+        try {
+            Path path = null == directory ? Files.createTempFile("sorted-run", ".bin") : Files.createTempFile(directory, "sorted-run", ".bin");
+            path.toFile().deleteOnExit();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER))) {
+                out.writeInt(current.size());
+                for (String[] pair : current) {
+                    boolean ownKey = pair[0] == pair[1]; // such a line is not stored twice
+                    out.writeBoolean(ownKey);
+                    Checkpoint.writeString(out, pair[0]);
+                    if (!ownKey) {
+                        Checkpoint.writeString(out, pair[1]);
+                    }
+                }
+            }
+            runs.add(path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        current = Sugar.list();
+    }
+
+    private static class Run {
+        private final int index; // earlier runs go first on equal keys
+        private final DataInputStream in;
+        private int remaining;
+        private String key;
+        private String line;
+
+        private Run(int index, Path path) throws IOException {
+            this.index = index;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER));
+            this.remaining = in.readInt();
+        }
+
+        private boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            boolean ownKey = in.readBoolean();
+            key = Checkpoint.readString(in);
+            line = ownKey ? key : Checkpoint.readString(in);
+            return true;
+        }
+
+        private void closeQuietly() {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
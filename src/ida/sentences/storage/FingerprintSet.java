@@ -0,0 +1,326 @@
+package ida.sentences.storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Canonical forms reduced to 128-bit fingerprints (MurmurHash3 of the string) kept in open-addressing tables with
+// linear probing, i.e. 16 bytes per slot and about 25 bytes per sentence on average instead of the string itself. A
+// false positive needs two canonical forms with the same 128 bits, which is negligible even for billions of sentences;
+// the exact StringSet is used in debug mode. The set is split into stripes, each with its own lock and table; tables
+// are either on heap or in memory-mapped files of a given directory.
+public class FingerprintSet implements CanonicalSet {
+
+    private static final int STRIPES = 64;
+    private static final int STRIPE_BITS = 6;
+    private static final int INITIAL_SLOTS = 1 << 10;
+    private static final int MAX_MAPPED_SLOTS = 1 << 27; // a single mapping cannot exceed 2GB
+    private static final double MAX_LOAD = 0.8;
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final Path directory; // null keeps tables on heap
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public FingerprintSet() {
+        this(null);
+    }
+
+    public FingerprintSet(Path directory) {
+        this.directory = directory;
+        if (null != directory) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        for (int idx = 0; idx < STRIPES; idx++) {
+            stripes[idx] = new Stripe();
+        }
+    }
+
+    @Override
+    public boolean add(String canonical) {
+        long[] fingerprint = fingerprint(canonical);
+        return add(fingerprint[0], fingerprint[1]);
+    }
+
+    private boolean add(long high, long low) {
+        if (0 == high && 0 == low) { // (0, 0) marks an empty slot
+            low = 1;
+        }
+        return stripes[(int) (high >>> (Long.SIZE - STRIPE_BITS))].add(high, low);
+    }
+
+    @Override
+    public boolean remove(String canonical) {
+        long[] fingerprint = fingerprint(canonical);
+        long high = fingerprint[0];
+        long low = 0 == high && 0 == fingerprint[1] ? 1 : fingerprint[1];
+        return stripes[(int) (high >>> (Long.SIZE - STRIPE_BITS))].remove(high, low);
+    }
+
+    @Override
+    public boolean contains(String canonical) {
+        long[] fingerprint = fingerprint(canonical);
+        long high = fingerprint[0];
+        long low = 0 == high && 0 == fingerprint[1] ? 1 : fingerprint[1];
+        return stripes[(int) (high >>> (Long.SIZE - STRIPE_BITS))].contains(high, low);
+    }
+
+    @Override
+    public long size() {
+        long retVal = 0;
+        for (Stripe stripe : stripes) {
+            retVal += stripe.size();
+        }
+        return retVal;
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    @Override
+    public void write(DataOutputStream out) throws IOException {
+        out.writeByte(FINGERPRINTS);
+        out.writeLong(size());
+        for (Stripe stripe : stripes) {
+            stripe.write(out);
+        }
+    }
+
+    void readContent(DataInputStream in) throws IOException {
+        long size = in.readLong();
+        for (long idx = 0; idx < size; idx++) {
+            add(in.readLong(), in.readLong());
+        }
+    }
+
+    private LongBuffer allocate(Stripe stripe, int slots) {
+        if (null == directory) {
+            return LongBuffer.wrap(new long[2 * slots]);
+        }
+        if (slots > MAX_MAPPED_SLOTS) {
+            throw new IllegalStateException("A stripe of the fingerprint set cannot have more than " + MAX_MAPPED_SLOTS + " slots.");
+        }
+        try {
+            Path file = Files.createTempFile(directory, "fingerprints", ".bin");
+            file.toFile().deleteOnExit();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                LongBuffer retVal = channel.map(FileChannel.MapMode.READ_WRITE, 0, 16L * slots).asLongBuffer();
+                stripe.release();
+                stripe.file = file;
+                return retVal;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private class Stripe {
+        private LongBuffer table; // slot s holds (table[2s], table[2s + 1])
+        private Path file; // null on heap
+        private int mask;
+        private int size;
+
+        private Stripe() {
+            this.table = allocate(this, INITIAL_SLOTS);
+            this.mask = INITIAL_SLOTS - 1;
+        }
+
+        private synchronized boolean add(long high, long low) {
+            int slot = (int) low & mask;
+            while (true) {
+                long storedHigh = table.get(2 * slot);
+                long storedLow = table.get(2 * slot + 1);
+                if (0 == storedHigh && 0 == storedLow) {
+                    break;
+                }
+                if (storedHigh == high && storedLow == low) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table.put(2 * slot, high);
+            table.put(2 * slot + 1, low);
+            size++;
+            if (size > MAX_LOAD * (mask + 1)) {
+                grow();
+            }
+            return true;
+        }
+
+        private synchronized boolean contains(long high, long low) {
+            for (int slot = (int) low & mask; ; slot = (slot + 1) & mask) {
+                long storedHigh = table.get(2 * slot);
+                long storedLow = table.get(2 * slot + 1);
+                if (0 == storedHigh && 0 == storedLow) {
+                    return false;
+                }
+                if (storedHigh == high && storedLow == low) {
+                    return true;
+                }
+            }
+        }
+
+        // backward-shift deletion keeps probe sequences unbroken without tombstones
+        private synchronized boolean remove(long high, long low) {
+            int hole = (int) low & mask;
+            while (true) {
+                long storedHigh = table.get(2 * hole);
+                long storedLow = table.get(2 * hole + 1);
+                if (0 == storedHigh && 0 == storedLow) {
+                    return false;
+                }
+                if (storedHigh == high && storedLow == low) {
+                    break;
+                }
+                hole = (hole + 1) & mask;
+            }
+            size--;
+            for (int next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+                long nextHigh = table.get(2 * next);
+                long nextLow = table.get(2 * next + 1);
+                if (0 == nextHigh && 0 == nextLow) {
+                    break;
+                }
+                int home = (int) nextLow & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    table.put(2 * hole, nextHigh);
+                    table.put(2 * hole + 1, nextLow);
+                    hole = next;
+                }
+            }
+            table.put(2 * hole, 0L);
+            table.put(2 * hole + 1, 0L);
+            return true;
+        }
+
+        private void grow() {
+            LongBuffer old = table;
+            int oldSlots = mask + 1;
+            Path oldFile = file;
+            file = null;
+            this.table = allocate(this, 2 * oldSlots);
+            this.mask = 2 * oldSlots - 1;
+            for (int slot = 0; slot < oldSlots; slot++) {
+                long high = old.get(2 * slot);
+                long low = old.get(2 * slot + 1);
+                if (0 != high || 0 != low) {
+                    int target = (int) low & mask;
+                    while (0 != table.get(2 * target) || 0 != table.get(2 * target + 1)) {
+                        target = (target + 1) & mask;
+                    }
+                    table.put(2 * target, high);
+                    table.put(2 * target + 1, low);
+                }
+            }
+            delete(oldFile);
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private synchronized void clear() {
+            release();
+            this.table = allocate(this, INITIAL_SLOTS);
+            this.mask = INITIAL_SLOTS - 1;
+            this.size = 0;
+        }
+
+        private synchronized void write(DataOutputStream out) throws IOException {
+            for (int slot = 0; slot <= mask; slot++) {
+                long high = table.get(2 * slot);
+                long low = table.get(2 * slot + 1);
+                if (0 != high || 0 != low) {
+                    out.writeLong(high);
+                    out.writeLong(low);
+                }
+            }
+        }
+
+        private void release() {
+            delete(file);
+            file = null;
+        }
+    }
+
+    private static void delete(Path file) {
+        if (null == file) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file); // the mapping itself is released by GC
+        } catch (IOException e) {
+            // e.g. Windows does not allow to delete a mapped file; deleteOnExit takes care of it then
+        }
+    }
+
+    // MurmurHash3 (x64, 128 bits) of the UTF-16 code units of the string; the first long is the high half
+    static long[] fingerprint(String string) {
+        int length = string.length();
+        long h1 = 0;
+        long h2 = 0;
+        int offset = 0;
+        for (; offset + 8 <= length; offset += 8) {
+            h1 ^= mixK1(pack(string, offset, 4));
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(pack(string, offset + 4, 4));
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        int rest = length - offset;
+        if (rest > 4) {
+            h2 ^= mixK2(pack(string, offset + 4, rest - 4));
+        }
+        if (rest > 0) {
+            h1 ^= mixK1(pack(string, offset, Math.min(4, rest)));
+        }
+        h1 ^= 2L * length;
+        h2 ^= 2L * length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[]{h2, h1};
+    }
+
+    private static long pack(String string, int offset, int chars) {
+        long retVal = 0;
+        for (int idx = 0; idx < chars; idx++) {
+            retVal |= ((long) string.charAt(offset + idx)) << (16 * idx);
+        }
+        return retVal;
+    }
+
+    private static long mixK1(long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,23 @@
+package ida.sentences.storage;
+
+import ida.sentences.SentenceState;
+
+import java.util.Collection;
+import java.util.List;
+
+// a finished layer keeping its sentences only as clause ids of the indexed basis; sentences are materialized on access
+public interface IdLayer {
+
+    // clause ids of the index-th sentence without materializing it
+    int[] getIds(int index);
+
+    // collects sentences of a layer which is being generated
+    interface Writer {
+
+        void append(Collection<SentenceState> sentences);
+
+        void append(int[] ids);
+
+        List<SentenceState> finish();
+    }
+}
@@ -0,0 +1,83 @@
+package ida.sentences.storage;
+
+import ida.ilp.logic.Clause;
+import ida.sentences.SentenceSetup;
+import ida.sentences.SentenceState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+
+// creates memory-mapped layers in a given directory, or compact layers on heap if there is no directory; every stored
+// clause has to come from the indexed basis
+public class LayerStore {
+
+    private final Path directory; // null for compact layers
+    private final Clause[] basis;
+    private final SentenceSetup setup;
+    private final CompactLayer.PredicateTable predicates;
+
+    public LayerStore(Path directory, Collection<Clause> clauses, SentenceSetup setup) {
+        this.directory = directory;
+        this.setup = setup;
+        this.basis = new Clause[clauses.size()];
+        for (Clause clause : clauses) {
+            if (clause.getId() < 0 || clause.getId() >= basis.length || null != basis[clause.getId()]) {
+                throw new IllegalStateException("The clauses are not indexed properly:\t" + clause);
+            }
+            basis[clause.getId()] = clause;
+        }
+        this.predicates = null == directory ? new CompactLayer.PredicateTable(basis) : null;
+        if (null == directory) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public IdLayer.Writer writer(int layer, int maxClauses) {
+        if (null == directory) {
+            return new CompactLayer.Writer(basis, predicates, setup);
+        }
+        try {
+            return new MappedLayer.Writer(Files.createTempFile(directory, "layer" + layer + "_", ".bin"), basis, setup, maxClauses);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // the layer copied into this store; sentences of an id layer are not materialized
+    public List<SentenceState> copy(List<SentenceState> layer, int level, int maxClauses) {
+        IdLayer.Writer writer = writer(level, maxClauses);
+        if (layer instanceof IdLayer stored) {
+            for (int idx = 0; idx < layer.size(); idx++) {
+                writer.append(stored.getIds(idx));
+            }
+        } else {
+            writer.append(layer);
+        }
+        return writer.finish();
+    }
+
+    public Clause[] getBasis() {
+        return basis;
+    }
+
+    public boolean isMapped() {
+        return null != directory;
+    }
+
+    // memory-mapped layers if the directory is given, compact ones if the setup asks for them, null otherwise
+    public static LayerStore create(String directory, Collection<Clause> clauses, SentenceSetup setup) {
+        if (null != directory) {
+            return new LayerStore(Paths.get(directory), clauses, setup);
+        }
+        return setup.compactLayers ? new LayerStore(null, clauses, setup) : null;
+    }
+}
@@ -0,0 +1,155 @@
+package ida.sentences.storage;
+
+import ida.ilp.logic.Clause;
+import ida.sentences.SentenceSetup;
+import ida.sentences.SentenceState;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// A finished BFS layer stored as fixed-size records of clause ids in memory-mapped files. A sentence is materialized
+// only when accessed (e.g. while being joined with clauses), so the layer itself occupies neither the heap nor GC time.
+// The list is read-only, except for clear() which throws the underlying file away.
+public class MappedLayer extends AbstractList<SentenceState> implements RandomAccess, IdLayer {
+
+    private static final int SEGMENT_BYTES = 1 << 30; // a single mapping cannot exceed 2GB
+
+    private final Path file;
+    private final Clause[] basis;
+    private final SentenceSetup setup;
+    private final int stride; // ints per record, i.e. number of clauses followed by their ids
+    private final int recordsPerSegment;
+    private IntBuffer[] segments;
+    private int size;
+
+    private MappedLayer(Path file, Clause[] basis, SentenceSetup setup, int stride, int size) throws IOException {
+        this.file = file;
+        this.basis = basis;
+        this.setup = setup;
+        this.stride = stride;
+        this.recordsPerSegment = SEGMENT_BYTES / (4 * stride);
+        this.size = size;
+        int segmentsCount = (size + recordsPerSegment - 1) / recordsPerSegment;
+        this.segments = new IntBuffer[segmentsCount];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int segment = 0; segment < segmentsCount; segment++) {
+                long position = 4L * stride * recordsPerSegment * segment;
+                long length = 4L * stride * Math.min(recordsPerSegment, size - segment * (long) recordsPerSegment);
+                segments[segment] = channel.map(FileChannel.MapMode.READ_ONLY, position, length).asIntBuffer();
+            }
+        }
+    }
+
+    @Override
+    public SentenceState get(int index) {
+        Objects.checkIndex(index, size);
+        IntBuffer segment = segments[index / recordsPerSegment];
+        int offset = (index % recordsPerSegment) * stride;
+        int clausesCount = segment.get(offset);
+        List<Clause> clauses = new ArrayList<>(clausesCount);
+        for (int idx = 1; idx <= clausesCount; idx++) {
+            clauses.add(basis[segment.get(offset + idx)]);
+        }
+        return new SentenceState(clauses, setup);
+    }
+
+    @Override
+    public int[] getIds(int index) {
+        Objects.checkIndex(index, size);
+        IntBuffer segment = segments[index / recordsPerSegment];
+        int offset = (index % recordsPerSegment) * stride;
+        int[] ids = new int[segment.get(offset)];
+        for (int idx = 0; idx < ids.length; idx++) {
+            ids[idx] = segment.get(offset + idx + 1);
+        }
+        return ids;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        this.segments = new IntBuffer[0];
+        this.size = 0;
+        try {
+            Files.deleteIfExists(file); // the mapping itself is released by GC
+        } catch (IOException e) {
+            // e.g. Windows does not allow to delete a mapped file; deleteOnExit takes care of it then
+        }
+    }
+
+    public static class Writer implements IdLayer.Writer {
+        private final Path file;
+        private final Clause[] basis;
+        private final SentenceSetup setup;
+        private final int stride;
+        private final DataOutputStream out;
+        private int size;
+
+        Writer(Path file, Clause[] basis, SentenceSetup setup, int maxClauses) {
+            this.file = file;
+            this.basis = basis;
+            this.setup = setup;
+            this.stride = 1 + maxClauses;
+            try {
+                this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            file.toFile().deleteOnExit();
+        }
+
+        @Override
+        public synchronized void append(Collection<SentenceState> sentences) {
+            for (SentenceState sentence : sentences) {
+                int[] ids = new int[sentence.clauses.size()];
+                for (int idx = 0; idx < ids.length; idx++) {
+                    ids[idx] = sentence.clauses.get(idx).getId();
+                    if (ids[idx] < 0) {
+                        throw new IllegalStateException("Only clauses from the indexed basis can be stored:\t" + sentence.clauses.get(idx));
+                    }
+                }
+                append(ids);
+            }
+        }
+
+        @Override
+        public synchronized void append(int[] ids) {
+            if (ids.length >= stride) {
+                throw new IllegalStateException("The sentence has more clauses than expected:\t" + Arrays.toString(ids));
+            }
+            try {
+                out.writeInt(ids.length);
+                for (int id : ids) {
+                    out.writeInt(id);
+                }
+                for (int idx = ids.length + 1; idx < stride; idx++) {
+                    out.writeInt(-1);
+                }
+                size++;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public synchronized MappedLayer finish() {
+            try {
+                out.close();
+                return new MappedLayer(file, basis, setup, stride, size);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
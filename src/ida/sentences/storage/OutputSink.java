@@ -0,0 +1,259 @@
+package ida.sentences.storage;
+
+import ida.sentences.SentenceSetup;
+import ida.utils.Sugar;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPOutputStream;
+
+// Standard output (and error) written by a dedicated thread. Printed lines are only copied into a large buffer which is
+// handed over to the writer thread once full or flushed, so the search continues (e.g. with the next layer) while the
+// previous output is being written. Since the sink replaces System.out itself, every line keeps its place no matter
+// who prints it. A block of lines to be sorted (e.g. the candidates of a layer) is handed over as it is, so even sorting
+// and encoding are left to the writer thread. At most QUEUED buffers wait for the writer; the rest is written at exit,
+// or by sync, e.g. before a checkpoint is stored so that the output is never behind it.
+public class OutputSink extends OutputStream {
+
+    private static final int BUFFER = 1 << 20;
+    private static final int QUEUED = 16;
+    private static final List<OutputSink> installed = Sugar.list();
+    private static volatile OutputSink standardOutput; // null unless installed
+
+    private final OutputStream target;
+    private final Charset charset;
+    private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUED);
+    private final Thread writer;
+    private byte[] buffer = new byte[BUFFER];
+    private int used;
+    private boolean closed;
+
+    private OutputSink(OutputStream target, String name) {
+        this.target = target;
+        this.charset = Charset.defaultCharset();
+        this.writer = new Thread(this::write, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        if (used == buffer.length) {
+            handOver(null);
+        }
+        buffer[used++] = (byte) b;
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            if (used == buffer.length) {
+                handOver(null);
+            }
+            int copied = Math.min(length, buffer.length - used);
+            System.arraycopy(bytes, offset, buffer, used, copied);
+            used += copied;
+            offset += copied;
+            length -= copied;
+        }
+    }
+
+    // hands the buffer over without waiting for it to be written
+    @Override
+    public synchronized void flush() {
+        if (used > 0) {
+            handOver(null);
+        }
+    }
+
+    // returns once everything printed so far is written
+    public void sync() {
+        CountDownLatch written = new CountDownLatch(1);
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            handOver(written);
+        }
+        try {
+            written.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            handOver(null);
+            put(new Chunk(null, -1, null));
+            closed = true;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void append(List<String> lines) {
+        if (used > 0) {
+            handOver(null);
+        }
+        put(new Chunk(lines, null));
+    }
+
+    private void handOver(CountDownLatch written) {
+        put(new Chunk(buffer, used, written));
+        this.buffer = new byte[BUFFER];
+        this.used = 0;
+    }
+
+    private void put(Chunk chunk) {
+        try {
+            queue.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void write() {
+        boolean failed = false;
+        while (true) {
+            Chunk chunk;
+            try {
+                chunk = queue.take();
+            } catch (InterruptedException e) {
+                continue; // the sink lives till the end of the process
+            }
+            try {
+                if (chunk.length < 0) {
+                    target.close();
+                    return;
+                }
+                if (!failed && null != chunk.lines) {
+                    writeSorted(chunk.lines);
+                } else if (!failed) {
+                    target.write(chunk.bytes, 0, chunk.length);
+                    if (null != chunk.written || queue.isEmpty()) {
+                        target.flush();
+                    }
+                }
+            } catch (IOException e) {
+                failed = true; // the rest is thrown away, so that the search is not blocked by a full queue
+                e.printStackTrace(new PrintStream(new FileOutputStream(FileDescriptor.err), true)); // not through a sink
+            } finally {
+                if (null != chunk.written) {
+                    chunk.written.countDown();
+                }
+            }
+        }
+    }
+
+    private void writeSorted(List<String> lines) throws IOException {
+        byte[] separator = System.lineSeparator().getBytes(charset);
+        byte[] out = new byte[BUFFER];
+        int length = 0;
+        for (String line : lines.stream().sorted().toList()) {
+            byte[] bytes = line.getBytes(charset);
+            if (length + bytes.length + separator.length > out.length) {
+                target.write(out, 0, length);
+                length = 0;
+                if (bytes.length + separator.length > out.length) {
+                    target.write(bytes);
+                    target.write(separator);
+                    continue;
+                }
+            }
+            System.arraycopy(bytes, 0, out, length, bytes.length);
+            length += bytes.length;
+            System.arraycopy(separator, 0, out, length, separator.length);
+            length += separator.length;
+        }
+        target.write(out, 0, length);
+    }
+
+    private static class Chunk {
+        private final byte[] bytes;
+        private final int length; // -1 ends the writer
+        private final List<String> lines; // to be sorted and written instead of bytes
+        private final CountDownLatch written; // null if nobody waits for this one
+
+        private Chunk(byte[] bytes, int length, CountDownLatch written) {
+            this.bytes = bytes;
+            this.length = length;
+            this.lines = null;
+            this.written = written;
+        }
+
+        private Chunk(List<String> lines, CountDownLatch written) {
+            this.bytes = null;
+            this.length = 0;
+            this.lines = lines;
+            this.written = written;
+        }
+    }
+
+    // prints the lines sorted; unless the standard output is a sink, sorting and printing are done right away
+    public static void printSorted(List<String> lines) {
+        OutputSink sink = standardOutput;
+        if (null == sink) {
+            lines.stream().sorted().forEach(System.out::println);
+            return;
+        }
+        System.out.flush(); // whatever has been printed before goes first
+        sink.append(lines);
+    }
+
+    // replaces System.out (and System.err) according to the setup; everything is written at exit
+    public static void install(SentenceSetup setup) {
+        if (!setup.asyncOutput && null == setup.outputFile) {
+            return;
+        }
+        OutputStream out = new FileOutputStream(FileDescriptor.out);
+        if (null != setup.outputFile) {
+            try {
+                out = new FileOutputStream(setup.outputFile);
+                if (setup.outputFile.endsWith(".gz")) {
+                    out = new GZIPOutputStream(out, 1 << 16);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        List<OutputSink> sinks = Sugar.list(new OutputSink(out, "output-sink"));
+        System.setOut(new PrintStream(sinks.get(0), false, Charset.defaultCharset()));
+        standardOutput = sinks.get(0);
+        if (setup.asyncOutput) {
+            sinks.add(new OutputSink(new FileOutputStream(FileDescriptor.err), "error-sink"));
+            System.setErr(new PrintStream(sinks.get(1), false, Charset.defaultCharset()));
+        }
+        synchronized (installed) {
+            installed.addAll(sinks);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.flush();
+            System.err.flush();
+            sinks.forEach(OutputSink::close);
+        }));
+    }
+
+    // everything printed so far is written by the installed sinks (nothing to do without them)
+    public static void syncAll() {
+        System.out.flush();
+        System.err.flush();
+        List<OutputSink> sinks;
+        synchronized (installed) {
+            sinks = Sugar.listFromCollections(installed);
+        }
+        sinks.forEach(OutputSink::sync);
+    }
+}
@@ -0,0 +1,54 @@
+package ida.sentences.storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// canonical forms kept as they are; exact, but a few hundred bytes per sentence
+public class StringSet implements CanonicalSet {
+
+    private final Set<String> strings = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public boolean add(String canonical) {
+        return strings.add(canonical);
+    }
+
+    @Override
+    public boolean remove(String canonical) {
+        return strings.remove(canonical);
+    }
+
+    @Override
+    public boolean contains(String canonical) {
+        return strings.contains(canonical);
+    }
+
+    @Override
+    public long size() {
+        return strings.size();
+    }
+
+    @Override
+    public void clear() {
+        strings.clear();
+    }
+
+    @Override
+    public void write(DataOutputStream out) throws IOException {
+        out.writeByte(STRINGS);
+        out.writeInt(strings.size());
+        for (String canonical : strings) {
+            Checkpoint.writeString(out, canonical);
+        }
+    }
+
+    void readContent(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        for (int idx = 0; idx < size; idx++) {
+            strings.add(Checkpoint.readString(in));
+        }
+    }
+}
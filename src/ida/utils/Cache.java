@@ -57,6 +57,15 @@ public class Cache<R, S> {
         return refs.get(key);
     }
 
+    /**
+     * Returns the number of cached elements.
+     *
+     * @return the number of cached elements
+     */
+    public int size() {
+        return refs.size();
+    }
+
     /**
      * Clears this cache
      */